@@ -0,0 +1,45 @@
+package org.algi.sugarloader;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Context of a job run by a benchmark : never cancelled, partial values are dropped.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class DirectContext<T> implements LoadContext<T> {
+
+    private final Executor mExecutor;
+
+    DirectContext(final Executor executor) {
+        mExecutor = executor;
+    }
+
+    @Override
+    public Executor executor() {
+        return mExecutor;
+    }
+
+    @Override
+    public void emit(final T partial) {
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public void throwIfCancelled() {
+    }
+
+    @Override
+    public int priority() {
+        return 0;
+    }
+
+    @Override
+    public Revalidation<T> revalidation() {
+        return null;
+    }
+}
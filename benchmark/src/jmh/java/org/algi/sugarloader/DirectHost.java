@@ -0,0 +1,58 @@
+package org.algi.sugarloader;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host of benchmarked loaders : runs posted work at once, on the posting thread, so that only the
+ * cost of the library is measured. Delayed work runs on a timer thread, once its delay elapsed.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class DirectHost implements LoaderHost {
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "DirectHost timer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /** Last scheduled run of each delayed runnable, so it may be cancelled */
+    private final Map<Runnable, Future<?>> mDelayed = new WeakHashMap<>();
+
+    @Override
+    public void post(final Runnable runnable) {
+        runnable.run();
+    }
+
+    @Override
+    public void postOnFrame(final Runnable runnable) {
+        runnable.run();
+    }
+
+    @Override
+    public void postDelayed(final Runnable runnable, final long delayMillis) {
+        final Future<?> future = TIMER.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+        synchronized (mDelayed) {
+            mDelayed.put(runnable, future);
+        }
+    }
+
+    @Override
+    public void cancel(final Runnable runnable) {
+        final Future<?> future;
+        synchronized (mDelayed) {
+            future = mDelayed.remove(runnable);
+        }
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+}
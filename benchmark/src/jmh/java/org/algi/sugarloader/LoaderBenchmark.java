@@ -0,0 +1,84 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Consumer;
+import org.algi.sugarloader.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Cost of the loader itself, through {@link HostedLoader} which shares its pipeline with Android's
+ * {@code SugarLoader} : building it, creating a loader, dispatching a result, reconnecting to a
+ * loader that already has its result, and a whole load.
+ *
+ * @author Alexandre Gianquinto
+ */
+@State(Scope.Thread)
+public class LoaderBenchmark {
+
+    private final LoaderHost mHost = new DirectHost();
+    private final Supplier<String> mSupplier = new Supplier<String>() {
+        @Override
+        public String get() {
+            return "value";
+        }
+    };
+    private Blackhole mBlackhole;
+    private CountDownLatch mLoaded;
+    private final Consumer<String> mConsumer = new Consumer<String>() {
+        @Override
+        public void accept(final String s) {
+            mBlackhole.consume(s);
+            if (mLoaded != null) {
+                mLoaded.countDown();
+            }
+        }
+    };
+    private final Result<String> mResult = Result.success("value");
+    private HostedLoader<String> mLoader;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        mBlackhole = blackhole;
+        mLoader = build();
+        mLoader.init();
+    }
+
+    @Benchmark
+    public HostedLoader<String> builder() {
+        return build();
+    }
+
+    @Benchmark
+    public LoadSpec<String> createLoader() {
+        return mLoader.createSpec(null);
+    }
+
+    @Benchmark
+    public void dispatch() {
+        mLoader.dispatch(this, mResult);
+    }
+
+    @Benchmark
+    public void reinit() {
+        mLoader.init();
+    }
+
+    @Benchmark
+    public void load() throws InterruptedException {
+        mLoaded = new CountDownLatch(1);
+        mLoader.restart();
+        mLoaded.await();
+        mLoaded = null;
+    }
+
+    private HostedLoader<String> build() {
+        return new HostedLoader<String>("LoaderBenchmark", mHost)
+                .background(mSupplier)
+                .onSuccess(mConsumer);
+    }
+}
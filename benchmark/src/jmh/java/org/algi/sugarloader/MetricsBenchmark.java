@@ -0,0 +1,23 @@
+package org.algi.sugarloader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of recording loader metrics, with several loads finishing at the same time.
+ *
+ * @author Alexandre Gianquinto
+ */
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final LoaderMetricsRecorder mRecorder = new LoaderMetricsRecorder();
+
+    @Benchmark
+    @Threads(4)
+    public void record() {
+        mRecorder.onBackgroundFinished("loader", 1000L, 3000000L, true);
+    }
+}
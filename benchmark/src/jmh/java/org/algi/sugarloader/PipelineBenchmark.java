@@ -0,0 +1,65 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building and running the background pipeline of one load, on the calling thread, as
+ * SugarLoader wraps it according to builder options.
+ *
+ * @author Alexandre Gianquinto
+ */
+@State(Scope.Thread)
+public class PipelineBenchmark {
+
+    private static final String KEY = "PipelineBenchmark";
+
+    private final Supplier<String> mSupplier = new Supplier<String>() {
+        @Override
+        public String get() {
+            return "value";
+        }
+    };
+    private final RetryPolicy mRetryPolicy = RetryPolicy.exponential(3, 1, TimeUnit.SECONDS);
+    private LoadContext<String> mContext;
+    private Job<String> mPlain;
+    private Job<String> mCached;
+    private Job<String> mShared;
+
+    @Setup
+    public void setUp() throws Exception {
+        mContext = new DirectContext<>(LoaderExecutors.io());
+        mPlain = Job.of(mSupplier);
+        mCached = MemoryCache.shared().caching(KEY, TimeUnit.HOURS.toMillis(1), MemoryCache.<String>unitWeigher(), mPlain);
+        mCached.run(mContext);
+        mShared = SharedLoads.share(KEY, mPlain);
+    }
+
+    @Benchmark
+    public Job<String> compose() {
+        Job<String> job = Job.of(mSupplier);
+        job = mRetryPolicy.retrying(job);
+        job = MemoryCache.shared().caching(KEY, TimeUnit.HOURS.toMillis(1), MemoryCache.<String>unitWeigher(), job);
+        return SharedLoads.share(KEY, job);
+    }
+
+    @Benchmark
+    public String plain() throws Exception {
+        return mPlain.run(mContext);
+    }
+
+    @Benchmark
+    public String memoryCacheHit() throws Exception {
+        return mCached.run(mContext);
+    }
+
+    @Benchmark
+    public String shared() throws Exception {
+        return mShared.run(mContext);
+    }
+}
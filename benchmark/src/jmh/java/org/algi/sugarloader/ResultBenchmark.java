@@ -0,0 +1,44 @@
+package org.algi.sugarloader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Cost of the result wrappers allocated for each delivery.
+ *
+ * @author Alexandre Gianquinto
+ */
+@State(Scope.Thread)
+public class ResultBenchmark {
+
+    private final String mValue = "value";
+    private final Exception mError = new IOException("failure");
+
+    @Benchmark
+    public Result<String> success() {
+        return Result.success(mValue);
+    }
+
+    @Benchmark
+    public Result<String> nullSuccess() {
+        return Result.success(null);
+    }
+
+    @Benchmark
+    public Result<String> error() {
+        return Result.error(mError);
+    }
+
+    @Benchmark
+    public Result<String> stale() {
+        return Result.success(mValue).asStale();
+    }
+
+    @Benchmark
+    public Result<String> partial() {
+        return Result.partial(mValue);
+    }
+}
@@ -0,0 +1,101 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Consumer;
+import org.algi.sugarloader.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of many concurrent loads through the library executors : each operation
+ * is one load of a {@link HostedLoader}, from its restart on the host thread to the delivery of
+ * its result there, as on Android's main thread.
+ *
+ * @author Alexandre Gianquinto
+ */
+@State(Scope.Benchmark)
+public class ThroughputBenchmark {
+
+    private static final int LOADS = 1000;
+
+    @Param({"io", "cpu"})
+    public String executor;
+
+    /** Microseconds of busy work per load */
+    @Param({"0", "50"})
+    public int work;
+
+    private EventLoopHost mHost;
+    private HostedLoader<?>[] mLoaders;
+    private volatile CountDownLatch mDone;
+
+    private final Runnable mRestartAll = new Runnable() {
+        @Override
+        public void run() {
+            for (HostedLoader<?> loader : mLoaders) {
+                loader.restart();
+            }
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        mHost = new EventLoopHost("ThroughputBenchmark");
+        final Executor executor = "io".equals(this.executor) ? LoaderExecutors.io() : LoaderExecutors.cpu();
+        final long workNanos = TimeUnit.MICROSECONDS.toNanos(work);
+        final Supplier<Long> supplier = new Supplier<Long>() {
+            @Override
+            public Long get() {
+                final long end = System.nanoTime() + workNanos;
+                long now;
+                do {
+                    now = System.nanoTime();
+                } while (now < end);
+                return now;
+            }
+        };
+        final Consumer<Long> consumer = new Consumer<Long>() {
+            @Override
+            public void accept(final Long value) {
+                mDone.countDown();
+            }
+        };
+        mLoaders = new HostedLoader<?>[LOADS];
+        for (int i = 0; i < LOADS; i++) {
+            mLoaders[i] = new HostedLoader<Long>("ThroughputBenchmark " + i, mHost)
+                    .background(supplier)
+                    .executor(executor)
+                    .onSuccess(consumer);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mHost.post(new Runnable() {
+            @Override
+            public void run() {
+                for (HostedLoader<?> loader : mLoaders) {
+                    loader.destroy();
+                }
+            }
+        });
+        mHost.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOADS)
+    public void loads() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(LOADS);
+        mDone = done;
+        mHost.post(mRestartAll);
+        done.await();
+    }
+}
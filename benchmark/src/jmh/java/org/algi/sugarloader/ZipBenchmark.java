@@ -0,0 +1,49 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Combiner3;
+import org.algi.sugarloader.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Overhead of running suppliers concurrently with {@link Job#zip}, compared to running them in
+ * sequence.
+ *
+ * @author Alexandre Gianquinto
+ */
+@State(Scope.Thread)
+public class ZipBenchmark {
+
+    private final Supplier<Integer> mSupplier = new Supplier<Integer>() {
+        @Override
+        public Integer get() {
+            return 1;
+        }
+    };
+    private final Combiner3<Integer, Integer, Integer, Integer> mSum = new Combiner3<Integer, Integer, Integer, Integer>() {
+        @Override
+        public Integer combine(final Integer a, final Integer b, final Integer c) {
+            return a + b + c;
+        }
+    };
+    private LoadContext<Integer> mContext;
+    private Job<Integer> mZip;
+
+    @Setup
+    public void setUp() {
+        mContext = new DirectContext<>(LoaderExecutors.cpu());
+        mZip = Job.zip(mSupplier, mSupplier, mSupplier, mSum);
+    }
+
+    @Benchmark
+    public Integer sequential() throws Exception {
+        return mSum.combine(mSupplier.get(), mSupplier.get(), mSupplier.get());
+    }
+
+    @Benchmark
+    public Integer zip() throws Exception {
+        return mZip.run(mContext);
+    }
+}
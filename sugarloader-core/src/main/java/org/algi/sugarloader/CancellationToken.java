@@ -0,0 +1,19 @@
+package org.algi.sugarloader;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Lets a background operation know that its result is not wanted anymore (the loader was
+ * restarted, destroyed or abandoned), so it can stop early and free its thread.
+ *
+ * @author Alexandre Gianquinto
+ */
+public interface CancellationToken {
+
+    boolean isCancelled();
+
+    /**
+     * @throws CancellationException if the operation was cancelled
+     */
+    void throwIfCancelled();
+}
@@ -0,0 +1,269 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The changes turning a list into another one : the least insertions and removals (Myers'
+ * algorithm, in linear space), and the changes of the items kept. Moves are seen as a removal and
+ * an insertion.
+ * <p>
+ * Changes are dispatched from the end of the list to its beginning, so that each position is
+ * valid for a list (or adapter) where the previous changes were applied, e.g. with a
+ * {@code RecyclerView.Adapter} :
+ * <pre>{@code
+ *      changes.dispatchTo(new ChangeSet.Listener() {
+ *          public void onInserted(int position, int count) { adapter.notifyItemRangeInserted(position, count); }
+ *          public void onRemoved(int position, int count) { adapter.notifyItemRangeRemoved(position, count); }
+ *          public void onChanged(int position, int count) { adapter.notifyItemRangeChanged(position, count); }
+ *      });
+ * }
+ * </pre>
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class ChangeSet {
+
+    /**
+     * Compares items of both lists, on background thread.
+     */
+    public interface ItemCallback<T> {
+        /**
+         * @return true if both items represent the same thing (e.g. same id), even if their
+         * content changed
+         */
+        boolean areItemsTheSame(T oldItem, T newItem);
+
+        /**
+         * Called only for items that are the same.
+         *
+         * @return true if both items are displayed the same way
+         */
+        boolean areContentsTheSame(T oldItem, T newItem);
+    }
+
+    /**
+     * Told about each change, see {@link #dispatchTo(Listener)}.
+     */
+    public interface Listener {
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onChanged(int position, int count);
+    }
+
+    private static final int INSERTED = 0;
+    private static final int REMOVED = 1;
+    private static final int CHANGED = 2;
+
+    /** No change at all */
+    static final ChangeSet NONE = new ChangeSet();
+
+    private static final Comparator<int[]> BY_OLD_POSITION = new Comparator<int[]>() {
+        @Override
+        public int compare(final int[] a, final int[] b) {
+            return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+        }
+    };
+
+    /** Type, position and count of each change, in dispatch order */
+    private int[] mChanges = new int[3 * 8];
+    private int mSize;
+
+    private ChangeSet() {
+    }
+
+    /**
+     * @return the changes turning {@code oldList} into {@code newList}. Both lists must not change
+     * meanwhile.
+     */
+    public static <T> ChangeSet compute(final List<? extends T> oldList, final List<? extends T> newList,
+                                        final ItemCallback<? super T> callback) {
+        final Differ<T> differ = new Differ<>(oldList, newList, callback);
+        final List<int[]> snakes = differ.snakes();
+        Collections.sort(snakes, BY_OLD_POSITION);
+
+        final ChangeSet changes = new ChangeSet();
+        // Walk backwards : positions before the current one are still those of the old list
+        int oldEnd = oldList.size();
+        int newEnd = newList.size();
+        for (int i = snakes.size() - 1; i >= -1; i--) {
+            final int x = i >= 0 ? snakes.get(i)[0] : 0;
+            final int y = i >= 0 ? snakes.get(i)[1] : 0;
+            final int length = i >= 0 ? snakes.get(i)[2] : 0;
+            final int gapStart = x + length;
+            if (oldEnd > gapStart) {
+                changes.add(REMOVED, gapStart, oldEnd - gapStart);
+            }
+            if (newEnd > y + length) {
+                changes.add(INSERTED, gapStart, newEnd - y - length);
+            }
+            for (int k = length - 1; k >= 0; k--) {
+                if (!callback.areContentsTheSame(oldList.get(x + k), newList.get(y + k))) {
+                    changes.add(CHANGED, x + k, 1);
+                }
+            }
+            oldEnd = x;
+            newEnd = y;
+        }
+        return changes;
+    }
+
+    /**
+     * @return true if both lists are displayed the same way
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public void dispatchTo(final Listener listener) {
+        for (int i = 0; i < mSize; i += 3) {
+            final int position = mChanges[i + 1];
+            final int count = mChanges[i + 2];
+            switch (mChanges[i]) {
+                case INSERTED:
+                    listener.onInserted(position, count);
+                    break;
+                case REMOVED:
+                    listener.onRemoved(position, count);
+                    break;
+                default:
+                    listener.onChanged(position, count);
+                    break;
+            }
+        }
+    }
+
+    private void add(final int type, final int position, final int count) {
+        // Consecutive changes, walking backwards, make a single range
+        if (type == CHANGED && mSize > 0 && mChanges[mSize - 3] == CHANGED && mChanges[mSize - 2] == position + 1) {
+            mChanges[mSize - 2] = position;
+            mChanges[mSize - 1]++;
+            return;
+        }
+        if (mSize == mChanges.length) {
+            mChanges = Arrays.copyOf(mChanges, mSize * 2);
+        }
+        mChanges[mSize] = type;
+        mChanges[mSize + 1] = position;
+        mChanges[mSize + 2] = count;
+        mSize += 3;
+    }
+
+    /**
+     * Finds the items the lists have in common, by splitting them on the middle snake of their
+     * shortest edit path, recursively.
+     */
+    private static class Differ<T> {
+        private final List<? extends T> mOld;
+        private final List<? extends T> mNew;
+        private final ItemCallback<? super T> mCallback;
+        /** Runs of same items : old position, new position, length */
+        private final List<int[]> mSnakes = new ArrayList<>();
+        private int[] mForward;
+        private int[] mBackward;
+
+        Differ(final List<? extends T> oldList, final List<? extends T> newList, final ItemCallback<? super T> callback) {
+            mOld = oldList;
+            mNew = newList;
+            mCallback = callback;
+        }
+
+        List<int[]> snakes() {
+            final int max = (mOld.size() + mNew.size() + 1) / 2;
+            mForward = new int[2 * max + 3];
+            mBackward = new int[2 * max + 3];
+            diff(0, mOld.size(), 0, mNew.size());
+            return mSnakes;
+        }
+
+        private boolean same(final int x, final int y) {
+            return mCallback.areItemsTheSame(mOld.get(x), mNew.get(y));
+        }
+
+        private void diff(int x0, int x1, int y0, int y1) {
+            // Common prefix and suffix : cheap, and what most reloads look like
+            int prefix = 0;
+            while (x0 + prefix < x1 && y0 + prefix < y1 && same(x0 + prefix, y0 + prefix)) {
+                prefix++;
+            }
+            if (prefix > 0) {
+                mSnakes.add(new int[]{x0, y0, prefix});
+                x0 += prefix;
+                y0 += prefix;
+            }
+            int suffix = 0;
+            while (x1 - suffix > x0 && y1 - suffix > y0 && same(x1 - suffix - 1, y1 - suffix - 1)) {
+                suffix++;
+            }
+            if (suffix > 0) {
+                mSnakes.add(new int[]{x1 - suffix, y1 - suffix, suffix});
+                x1 -= suffix;
+                y1 -= suffix;
+            }
+            // Only insertions or removals are left otherwise, and at least two edits here
+            if (x0 < x1 && y0 < y1) {
+                final int[] snake = middleSnake(x0, x1, y0, y1);
+                if (snake[2] > 0) {
+                    mSnakes.add(snake);
+                }
+                diff(x0, snake[0], y0, snake[1]);
+                diff(snake[0] + snake[2], x1, snake[1] + snake[2], y1);
+            }
+        }
+
+        /**
+         * @return the middle snake of the shortest edit path between both ranges, as its start in
+         * both lists and its length, possibly 0
+         */
+        private int[] middleSnake(final int x0, final int x1, final int y0, final int y1) {
+            final int n = x1 - x0;
+            final int m = y1 - y0;
+            final int delta = n - m;
+            final boolean odd = (delta & 1) != 0;
+            final int max = (n + m + 1) / 2;
+            final int offset = max + 1;
+            final int[] forward = mForward;
+            final int[] backward = mBackward;
+            forward[offset + 1] = 0;
+            backward[offset + 1] = 0;
+            for (int d = 0; d <= max; d++) {
+                for (int k = -d; k <= d; k += 2) {
+                    int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                            ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                    int y = x - k;
+                    final int startX = x;
+                    while (x < n && y < m && same(x0 + x, y0 + y)) {
+                        x++;
+                        y++;
+                    }
+                    forward[offset + k] = x;
+                    if (odd && k >= delta - d + 1 && k <= delta + d - 1 && x + backward[offset + delta - k] >= n) {
+                        return new int[]{x0 + startX, y0 + startX - k, x - startX};
+                    }
+                }
+                for (int k = -d; k <= d; k += 2) {
+                    // Coordinates from the end of both ranges
+                    int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                            ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                    int y = x - k;
+                    final int startX = x;
+                    while (x < n && y < m && same(x1 - x - 1, y1 - y - 1)) {
+                        x++;
+                        y++;
+                    }
+                    backward[offset + k] = x;
+                    if (!odd && delta - k >= -d && delta - k <= d && x + forward[offset + delta - k] >= n) {
+                        return new int[]{x1 - x, y1 - y, x - startX};
+                    }
+                }
+            }
+            throw new IllegalStateException("No middle snake found, are the lists modified while compared ?");
+        }
+    }
+}
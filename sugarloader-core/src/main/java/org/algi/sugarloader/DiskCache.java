@@ -0,0 +1,301 @@
+package org.algi.sugarloader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * File-backed cache of loader results, used by {@link SugarLoader#diskCache}. It survives
+ * application restarts, so a screen may display the data of the previous launch while loading
+ * fresh data.
+ * <p>
+ * Each namespace is stored in a single journal file : entries are appended, and the file is
+ * compacted once it holds more obsolete records than live ones. A journal truncated by a crash
+ * simply loses its last record. All operations do I/O, so they are expected to be called from a
+ * background thread (which loaders do).
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class DiskCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int MAX_KEY_LENGTH = 1024;
+
+    /** Journals smaller than this are never compacted */
+    private static final long COMPACTION_MIN_SIZE = 256 * 1024;
+
+    /** Data length of a record that removes its key */
+    private static final int TOMBSTONE = -1;
+
+    private static final Map<File, DiskCache> OPENED = new HashMap<>();
+
+    private final File mFile;
+
+    private final Map<String, Record> mIndex = new LinkedHashMap<>();
+
+    private FileChannel mChannel;
+
+    /** Position where next record is appended */
+    private long mEnd;
+
+    /** Total size of the records that are still indexed */
+    private long mLiveBytes;
+
+    private DiskCache(final File file) {
+        mFile = file;
+    }
+
+    /**
+     * Get the cache of a namespace. The journal is only read when the cache is first used.
+     *
+     * @param directory where to store the journal (e.g. {@code context.getCacheDir()})
+     * @param namespace the name of the journal file. Every call with the same directory and
+     *                  namespace returns the same instance.
+     */
+    public static DiskCache open(final File directory, final String namespace) {
+        final File file = new File(directory, namespace + ".journal");
+        synchronized (OPENED) {
+            DiskCache cache = OPENED.get(file);
+            if (cache == null) {
+                cache = new DiskCache(file);
+                OPENED.put(file, cache);
+            }
+            return cache;
+        }
+    }
+
+    public synchronized void remove(final String key) throws IOException {
+        ensureOpen();
+        if (mIndex.containsKey(key)) {
+            append(key, 0, null);
+        }
+    }
+
+    public synchronized void clear() throws IOException {
+        close();
+        if (mFile.exists() && !mFile.delete()) {
+            throw new IOException("Unable to delete " + mFile);
+        }
+    }
+
+    /**
+     * @return the stored bytes for this key, or null if there are none or if they have expired
+     */
+    synchronized byte[] get(final String key) throws IOException {
+        ensureOpen();
+        final Record record = mIndex.get(key);
+        if (record == null) {
+            return null;
+        }
+        if (record.expiresAt <= System.currentTimeMillis()) {
+            append(key, 0, null);
+            return null;
+        }
+        final ByteBuffer data = ByteBuffer.allocate(record.dataLength);
+        if (!readFully(data, record.dataOffset)) {
+            throw new IOException("Journal " + mFile + " was truncated");
+        }
+        return data.array();
+    }
+
+    synchronized void put(final String key, final byte[] data, final long maxAgeMillis) throws IOException {
+        ensureOpen();
+        append(key, System.currentTimeMillis() + maxAgeMillis, data);
+        if (mEnd > COMPACTION_MIN_SIZE && mEnd - mLiveBytes > mLiveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * @return the stored result for this key, marked as stale, or null if there is none, if it has
+     * expired or if it cannot be read
+     */
+    <T> Result<T> get(final String key, final ResultSerializer<T> serializer) {
+        try {
+            final byte[] data = get(key);
+            return data == null ? null : Result.stale(serializer.deserialize(data));
+        } catch (IOException e) {
+            // A broken cache entry is just a cache miss
+            return null;
+        }
+    }
+
+    /**
+     * @return a job that stores every value returned by {@code job} in this cache
+     */
+    <T> Job<T> caching(final String key, final long maxAgeMillis, final ResultSerializer<T> serializer, final Job<T> job) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final T value = job.run(context);
+                try {
+                    put(key, serializer.serialize(value), maxAgeMillis);
+                } catch (IOException e) {
+                    // The load succeeded : failing to cache it must not turn it into an error
+                }
+                return value;
+            }
+        };
+    }
+
+    /* ******************************************
+     * Journal
+     * ******************************************/
+
+    private void ensureOpen() throws IOException {
+        if (mChannel != null) {
+            return;
+        }
+        final File directory = mFile.getParentFile();
+        if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        mChannel = new RandomAccessFile(mFile, "rw").getChannel();
+        readJournal();
+    }
+
+    private void close() throws IOException {
+        mIndex.clear();
+        mEnd = 0;
+        mLiveBytes = 0;
+        if (mChannel != null) {
+            final FileChannel channel = mChannel;
+            mChannel = null;
+            channel.close();
+        }
+    }
+
+    private void readJournal() throws IOException {
+        final long size = mChannel.size();
+        final ByteBuffer keyLength = ByteBuffer.allocate(4);
+        final ByteBuffer header = ByteBuffer.allocate(12);
+        long position = 0;
+        while (position < size) {
+            keyLength.clear();
+            if (!readFully(keyLength, position)) {
+                break;
+            }
+            final int keySize = keyLength.getInt(0);
+            if (keySize < 0 || keySize > MAX_KEY_LENGTH) {
+                break;
+            }
+            final ByteBuffer key = ByteBuffer.allocate(keySize);
+            header.clear();
+            if (!readFully(key, position + 4) || !readFully(header, position + 4 + keySize)) {
+                break;
+            }
+            final long expiresAt = header.getLong(0);
+            final int dataLength = header.getInt(8);
+            final long dataOffset = position + 16 + keySize;
+            final long recordEnd = dataOffset + Math.max(dataLength, 0);
+            if (recordEnd > size) {
+                break;
+            }
+            index(new String(key.array(), UTF_8), new Record(dataOffset, dataLength, expiresAt, recordEnd - position));
+            position = recordEnd;
+        }
+        if (position < size) {
+            // Last record was not fully written (crash, full disk...) : drop it
+            mChannel.truncate(position);
+        }
+        mEnd = position;
+    }
+
+    /**
+     * Append a record to the journal, or a tombstone if {@code data} is null.
+     */
+    private void append(final String key, final long expiresAt, final byte[] data) throws IOException {
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IOException("Key is too long : " + key);
+        }
+        final int dataLength = data == null ? TOMBSTONE : data.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(16 + keyBytes.length + Math.max(dataLength, 0));
+        buffer.putInt(keyBytes.length).put(keyBytes).putLong(expiresAt).putInt(dataLength);
+        if (data != null) {
+            buffer.put(data);
+        }
+        buffer.flip();
+
+        final long position = mEnd;
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer, position + buffer.position());
+        }
+        mEnd = position + buffer.limit();
+        index(key, new Record(position + 16 + keyBytes.length, dataLength, expiresAt, buffer.limit()));
+    }
+
+    private void index(final String key, final Record record) {
+        final Record previous = mIndex.remove(key);
+        if (previous != null) {
+            mLiveBytes -= previous.size;
+        }
+        if (record.dataLength != TOMBSTONE) {
+            mIndex.put(key, record);
+            mLiveBytes += record.size;
+        }
+    }
+
+    /**
+     * Rewrite the journal with live records only.
+     */
+    private void compact() throws IOException {
+        final File compacted = new File(mFile.getPath() + ".tmp");
+        final FileChannel target = new RandomAccessFile(compacted, "rw").getChannel();
+        try {
+            target.truncate(0);
+            long position = 0;
+            final long now = System.currentTimeMillis();
+            for (final Record record : mIndex.values()) {
+                if (record.expiresAt > now) {
+                    final long recordStart = record.dataOffset + record.dataLength - record.size;
+                    long copied = 0;
+                    while (copied < record.size) {
+                        copied += mChannel.transferTo(recordStart + copied, record.size - copied, target.position(position + copied));
+                    }
+                    position += record.size;
+                }
+            }
+            target.force(false);
+        } finally {
+            target.close();
+        }
+        close();
+        if (!compacted.renameTo(mFile)) {
+            throw new IOException("Unable to replace " + mFile);
+        }
+        ensureOpen();
+    }
+
+    private boolean readFully(final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (mChannel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class Record {
+        final long dataOffset;
+        final int dataLength;
+        final long expiresAt;
+        /** Size of the whole record in the journal */
+        final long size;
+
+        Record(final long dataOffset, final int dataLength, final long expiresAt, final long size) {
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.expiresAt = expiresAt;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.algi.sugarloader;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LoaderHost} for plain JVMs (tests, benchmarks, tools) : a dedicated daemon thread plays
+ * the role of Android's main thread.
+ * <pre>{@code
+ *      LoaderHost host = new EventLoopHost("loaders");
+ *      host.post(() -> new HostedLoader<Profile>("Load profile", host)
+ *              .background(() -> mService.fetchProfile())
+ *              .onSuccess(profile -> render(profile))
+ *              .init());
+ * }
+ * </pre>
+ *
+ * @author Alexandre Gianquinto
+ */
+public class EventLoopHost implements LoaderHost {
+
+    private final ScheduledThreadPoolExecutor mLoop;
+
+    /** Last scheduled run of each delayed runnable, so it may be cancelled */
+    private final Map<Runnable, Future<?>> mDelayed = new WeakHashMap<>();
+
+    public EventLoopHost(final String name) {
+        mLoop = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mLoop.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    @Override
+    public void post(final Runnable runnable) {
+        mLoop.execute(runnable);
+    }
+
+    @Override
+    public void postOnFrame(final Runnable runnable) {
+        post(runnable);
+    }
+
+    @Override
+    public void postDelayed(final Runnable runnable, final long delayMillis) {
+        final Future<?> future = mLoop.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+        synchronized (mDelayed) {
+            mDelayed.put(runnable, future);
+        }
+    }
+
+    @Override
+    public void cancel(final Runnable runnable) {
+        final Future<?> future;
+        synchronized (mDelayed) {
+            future = mDelayed.remove(runnable);
+        }
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    /**
+     * Stop the host thread once the runnables already posted have run. Delayed ones are dropped.
+     */
+    public void shutdown() {
+        mLoop.shutdown();
+    }
+}
@@ -0,0 +1,188 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs several operations concurrently, from a background thread, and waits for all of them.
+ * <p>
+ * All branches are submitted to the executor, and the calling thread waits for them. If some
+ * branches have still not been picked by a thread after a short delay, the calling thread runs
+ * them itself, one after the other, then waits again : the fork cannot deadlock on a busy (or
+ * single-threaded) executor, and costs little more than a sequential run when no thread is
+ * available.
+ * </p>
+ * <p>
+ * The first failure cancels the other branches and is thrown as is. Branches that are already
+ * running are told through the cancellation token given to them.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+final class Fork implements CancellationToken {
+
+    /**
+     * How long the calling thread waits before running the branches that were not picked by the
+     * executor, and how often it checks whether its own token was cancelled
+     */
+    static final long STEAL_DELAY_MILLIS = 10;
+
+    private final Executor mExecutor;
+    private final CancellationToken mParent;
+    private final int mPriority;
+    private final List<Branch<?>> mBranches = new ArrayList<>();
+    private final AtomicReference<Throwable> mFailure = new AtomicReference<>();
+    private CountDownLatch mRemaining;
+
+    /**
+     * @param executor where to run the branches
+     * @param parent   the token of the calling operation : cancelling it cancels every branch
+     * @param priority the priority of the calling operation, given to every branch
+     */
+    Fork(final Executor executor, final CancellationToken parent, final int priority) {
+        mExecutor = executor;
+        mParent = parent;
+        mPriority = priority;
+    }
+
+    /**
+     * Add a branch, before {@link #join()} is called.
+     *
+     * @return the index of the branch in the list returned by {@link #join()}
+     */
+    int add(final Callable<?> operation) {
+        mBranches.add(new Branch<>(operation));
+        return mBranches.size() - 1;
+    }
+
+    /**
+     * Run every branch and wait for them.
+     *
+     * @return the results of the branches, in the order they were added
+     * @throws Exception the first failure of a branch, {@link CancellationException} if the
+     *                   parent token was cancelled, or {@link InterruptedException} if the calling
+     *                   thread was interrupted : the other branches are cancelled in every case
+     */
+    List<Object> join() throws Exception {
+        final int count = mBranches.size();
+        mRemaining = new CountDownLatch(count);
+        for (final Branch<?> branch : mBranches) {
+            mExecutor.execute(branch);
+        }
+        try {
+            while (!mRemaining.await(STEAL_DELAY_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (mParent.isCancelled()) {
+                    fail(new CancellationException("Load was cancelled"));
+                } else {
+                    // The executor is busy : do not wait for it again between branches
+                    while (!isCancelled() && runPendingBranch()) {
+                        // Run the next one
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // e.g. by the timeout watchdog : branches must not keep running for a failed load
+            fail(e);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+
+        final Throwable failure = mFailure.get();
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        } else if (failure != null) {
+            throw (Error) failure;
+        }
+        final List<Object> results = new ArrayList<>(count);
+        for (final Branch<?> branch : mBranches) {
+            results.add(branch.get());
+        }
+        return results;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mFailure.get() != null || mParent.isCancelled();
+    }
+
+    @Override
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Load was cancelled");
+        }
+    }
+
+    /**
+     * Run the last branch that no thread has picked yet, if any.
+     *
+     * @return false if every branch was already picked
+     */
+    private boolean runPendingBranch() {
+        for (int i = mBranches.size() - 1; i >= 0; i--) {
+            final Branch<?> branch = mBranches.get(i);
+            if (!branch.mStarted) {
+                if (mExecutor instanceof ThreadPoolExecutor) {
+                    ((ThreadPoolExecutor) mExecutor).remove(branch);
+                }
+                // No-op if a thread picked it in the meantime
+                branch.run();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fail(final Throwable failure) {
+        if (!mFailure.compareAndSet(null, failure)) {
+            return;
+        }
+        for (final Branch<?> branch : mBranches) {
+            if (branch.cancel(false) && mExecutor instanceof ThreadPoolExecutor) {
+                ((ThreadPoolExecutor) mExecutor).remove(branch);
+            }
+        }
+    }
+
+    private class Branch<R> extends FutureTask<R> implements Prioritized {
+
+        volatile boolean mStarted;
+
+        Branch(final Callable<R> operation) {
+            super(operation);
+        }
+
+        @Override
+        public void run() {
+            mStarted = true;
+            super.run();
+        }
+
+        @Override
+        public int priority() {
+            return mPriority;
+        }
+
+        @Override
+        protected void done() {
+            if (!isCancelled()) {
+                try {
+                    get();
+                } catch (ExecutionException e) {
+                    fail(e.getCause());
+                } catch (InterruptedException | CancellationException e) {
+                    // Cannot happen : the task is done and was not cancelled
+                }
+            }
+            mRemaining.countDown();
+        }
+    }
+}
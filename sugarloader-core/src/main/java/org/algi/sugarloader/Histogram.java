@@ -0,0 +1,124 @@
+package org.algi.sugarloader;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of durations, with fixed buckets from 1 ms to 10 s. Recording a value costs
+ * a few atomic increments, and never allocates.
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class Histogram {
+
+    /** Upper bounds of the buckets, in milliseconds. A last bucket holds longer durations. */
+    private static final long[] BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_MILLIS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            BOUNDS_NANOS[i] = TimeUnit.MILLISECONDS.toNanos(BOUNDS_MILLIS[i]);
+        }
+    }
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+    private final AtomicLong mSumNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    public void record(final long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        mCounts.incrementAndGet(bucket);
+        mSumNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = mMaxNanos.get())) {
+            if (mMaxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return a copy of the current values. Concurrent recordings may be partially included.
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[mCounts.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = mCounts.get(i);
+        }
+        return new Snapshot(counts, mSumNanos.get(), mMaxNanos.get());
+    }
+
+    /**
+     * @return the upper bounds of the buckets, in milliseconds (the last bucket has no bound)
+     */
+    public static long[] bucketBoundsMillis() {
+        return BOUNDS_MILLIS.clone();
+    }
+
+    public static final class Snapshot {
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mSumNanos;
+        private final long mMaxNanos;
+
+        Snapshot(final long[] counts, final long sumNanos, final long maxNanos) {
+            mCounts = counts;
+            long count = 0;
+            for (final long c : counts) {
+                count += c;
+            }
+            mCount = count;
+            mSumNanos = sumNanos;
+            mMaxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMeanMillis() {
+            return mCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(mSumNanos / mCount);
+        }
+
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(mMaxNanos);
+        }
+
+        /**
+         * @param percentile between 0 and 100, e.g. 95
+         * @return the upper bound of the bucket holding the given percentile, in milliseconds
+         * (the max for the last bucket)
+         */
+        public long getPercentileMillis(final double percentile) {
+            final long rank = (long) Math.ceil(mCount * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+                seen += mCounts[i];
+                if (seen >= rank && seen > 0) {
+                    return BOUNDS_MILLIS[i];
+                }
+            }
+            return getMaxMillis();
+        }
+
+        /**
+         * @return the number of values in each bucket, see {@link #bucketBoundsMillis()}
+         */
+        public long[] getBucketCounts() {
+            return mCounts.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + mCount + ", mean=" + getMeanMillis() + "ms, p50=" + getPercentileMillis(50)
+                    + "ms, p95=" + getPercentileMillis(95) + "ms, max=" + getMaxMillis() + "ms, buckets="
+                    + Arrays.toString(mCounts);
+        }
+    }
+}
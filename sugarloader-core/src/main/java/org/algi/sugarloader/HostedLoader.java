@@ -0,0 +1,163 @@
+package org.algi.sugarloader;
+
+import android.support.annotation.NonNull;
+
+import org.algi.sugarloader.function.Function;
+import org.algi.sugarloader.function.Supplier;
+
+import java.util.List;
+
+/**
+ * Runs a {@link LoaderDefinition} on any JVM, without Android : the loader lives on the given
+ * {@link LoaderHost} thread, from which {@link #init()}, {@link #restart()} and {@link #destroy()}
+ * must be called, and where results are delivered. Like an Android loader, it keeps its last
+ * result, so calling {@link #init()} again delivers it instead of loading again.
+ * <pre>{@code
+ *      new HostedLoader<Profile>("Load profile", host)
+ *          .background(() -> mService.fetchProfile())
+ *          .onSuccess(profile -> render(profile))
+ *          .init();
+ * }
+ * </pre>
+ *
+ * @author Alexandre Gianquinto
+ */
+public class HostedLoader<T> extends LoaderDefinition<T, HostedLoader<T>> {
+
+    private final LoaderHost mHost;
+
+    /** Current loader, if any */
+    private Instance mInstance;
+
+    /**
+     * @param name the name of the loader, used for metrics and as default cache key
+     * @param host the thread the loader lives on
+     */
+    public HostedLoader(@NonNull final String name, @NonNull final LoaderHost host) {
+        this(name.hashCode(), name, host);
+    }
+
+    private HostedLoader(final int id, final String name, final LoaderHost host) {
+        super(id, name);
+        mHost = host;
+    }
+
+    /**
+     * Same as {@code SugarLoader.map}.
+     */
+    public <R> HostedLoader<R> map(@NonNull final Function<? super T, ? extends R> function) {
+        return transformed(new HostedLoader<R>(id, name, mHost), Job.map(background(), function));
+    }
+
+    /**
+     * Same as {@code SugarLoader.flatMap}.
+     */
+    public <R> HostedLoader<R> flatMap(@NonNull final Function<? super T, ? extends Supplier<? extends R>> function) {
+        return transformed(new HostedLoader<R>(id, name, mHost), Job.flatMap(background(), function));
+    }
+
+    /**
+     * Same as {@code SugarLoader.diff}.
+     */
+    @SuppressWarnings("unchecked")
+    public <E> HostedLoader<ListDiff<E>> diff(@NonNull final ChangeSet.ItemCallback<? super E> callback) {
+        return transformed(new HostedLoader<ListDiff<E>>(id, name, mHost), Job.diff((Job<List<E>>) (Job<?>) background(), callback));
+    }
+
+    public void init() {
+        if (beforeInit(mInstance)) {
+            return;
+        }
+        if (mInstance == null) {
+            mInstance = create();
+        }
+        mInstance.start();
+    }
+
+    public void restart() {
+        scheduleRestart(new Runnable() {
+            @Override
+            public void run() {
+                beforeRestart(mInstance);
+                if (mInstance != null) {
+                    mInstance.reset();
+                }
+                mInstance = create();
+                mInstance.start();
+            }
+        });
+    }
+
+    public void destroy() {
+        cancelPendingRestart();
+        if (mInstance != null) {
+            mInstance.reset();
+            mInstance = null;
+        }
+    }
+
+    private Instance create() {
+        final Instance instance = new Instance(createSpec(null));
+        loaderCreated(instance);
+        return instance;
+    }
+
+    @Override
+    HostedLoader<T> self() {
+        return this;
+    }
+
+    @Override
+    LoaderHost host() {
+        return mHost;
+    }
+
+    /**
+     * One loader, from its creation to its reset.
+     */
+    private class Instance implements LoaderEngine.Target<T>, LoaderEngine.Owner<T> {
+        private final LoaderEngine<T> mEngine;
+        private boolean mReset;
+
+        Instance(final LoadSpec<T> spec) {
+            mEngine = new LoaderEngine<>(spec, this);
+        }
+
+        void start() {
+            final Result<T> retained = mEngine.retained();
+            if (retained != null) {
+                deliverResult(retained);
+            }
+            if (mEngine.needsLoad()) {
+                mEngine.load();
+            }
+        }
+
+        void reset() {
+            mReset = true;
+            mEngine.reset();
+        }
+
+        @Override
+        public boolean isActive() {
+            return !mReset;
+        }
+
+        @Override
+        public void deliverResult(final Result<T> result) {
+            mEngine.retain(result);
+            dispatch(this, result);
+        }
+
+        @Override
+        public void onContentChanged() {
+            // A hosted loader is never stopped
+            mEngine.load();
+        }
+
+        @Override
+        public LoaderEngine<T> engine() {
+            return mEngine;
+        }
+    }
+}
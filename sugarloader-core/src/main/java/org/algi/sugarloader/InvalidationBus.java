@@ -0,0 +1,94 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Process-wide table of the loaders depending on some data, indexed by logical keys (e.g.
+ * "orders"), so that a write anywhere in the application reloads them :
+ * <pre>{@code
+ *      new SugarLoader<List<Order>>("Load orders")
+ *          .background(() -> mDatabase.orders())
+ *          .dependsOn("orders")
+ *          .onSuccess(orders -> mAdapter.setOrders(orders))
+ *          .init(this);
+ *      ...
+ *      // on any thread, once orders were written
+ *      InvalidationBus.invalidate("orders");
+ * }
+ * </pre>
+ * Invalidations are coalesced : a loader reloads once, {@link #COALESCE_MILLIS} after the first
+ * invalidation of its keys, however many came in between. A stopped loader does not reload until
+ * it is started again.
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class InvalidationBus {
+
+    /**
+     * Told when one of its keys was invalidated.
+     */
+    interface Subscriber {
+        /**
+         * Called on the invalidating thread : the reload must be scheduled on the loader thread.
+         */
+        void onInvalidated();
+    }
+
+    /** How long a loader waits for other invalidations before reloading */
+    static final long COALESCE_MILLIS = 50;
+
+    private static final Map<String, Set<Subscriber>> SUBSCRIBERS = new HashMap<>();
+
+    private InvalidationBus() {
+    }
+
+    /**
+     * Reload every loader depending on any of the given keys. May be called from any thread.
+     *
+     * @param keys the keys of the data that changed
+     */
+    public static void invalidate(final String... keys) {
+        final List<Subscriber> subscribers = new ArrayList<>();
+        synchronized (SUBSCRIBERS) {
+            for (String key : keys) {
+                final Set<Subscriber> set = SUBSCRIBERS.get(key);
+                if (set != null) {
+                    subscribers.addAll(set);
+                }
+            }
+        }
+        // Outside of the lock : subscribers may register or unregister meanwhile
+        for (Subscriber subscriber : subscribers) {
+            subscriber.onInvalidated();
+        }
+    }
+
+    static void register(final String[] keys, final Subscriber subscriber) {
+        synchronized (SUBSCRIBERS) {
+            for (String key : keys) {
+                Set<Subscriber> set = SUBSCRIBERS.get(key);
+                if (set == null) {
+                    set = new LinkedHashSet<>();
+                    SUBSCRIBERS.put(key, set);
+                }
+                set.add(subscriber);
+            }
+        }
+    }
+
+    static void unregister(final String[] keys, final Subscriber subscriber) {
+        synchronized (SUBSCRIBERS) {
+            for (String key : keys) {
+                final Set<Subscriber> set = SUBSCRIBERS.get(key);
+                if (set != null && set.remove(subscriber) && set.isEmpty()) {
+                    SUBSCRIBERS.remove(key);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.CancellableSupplier;
+import org.algi.sugarloader.function.Combiner;
+import org.algi.sugarloader.function.Combiner3;
+import org.algi.sugarloader.function.Combiner4;
+import org.algi.sugarloader.function.Function;
+import org.algi.sugarloader.function.Predicate;
+import org.algi.sugarloader.function.RevalidatingSupplier;
+import org.algi.sugarloader.function.StreamingSupplier;
+import org.algi.sugarloader.function.Supplier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * A background operation, as run by a {@link LoadTask}. Unlike user suppliers, it has access to
+ * the task running it (its {@link LoadContext}), e.g. to emit partial values or check for cancellation.
+ *
+ * @author Alexandre Gianquinto
+ */
+abstract class Job<T> {
+
+    /** How many chunks of a parallel job each core gets, by default */
+    private static final int CHUNKS_PER_CORE = 4;
+
+    abstract T run(LoadContext<T> context) throws Exception;
+
+    static <T> Job<T> of(final Supplier<T> supplier) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                return supplier.get();
+            }
+        };
+    }
+
+    static <T> Job<T> ofStreaming(final StreamingSupplier<T> supplier) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                return supplier.get(context);
+            }
+        };
+    }
+
+    static <T> Job<T> ofCancellable(final CancellableSupplier<T> supplier) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                return supplier.get(context);
+            }
+        };
+    }
+
+    static <T> Job<T> ofRevalidating(final RevalidatingSupplier<T> supplier) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final Revalidation<T> revalidation = context.revalidation();
+                return supplier.get(revalidation != null ? revalidation : new Revalidation<T>(null, null));
+            }
+        };
+    }
+
+    /**
+     * @return a job that runs {@code job}, then applies {@code function} to its value, on the same
+     * thread. Partial values are mapped too.
+     */
+    static <S, T> Job<T> map(final Job<S> job, final Function<? super S, ? extends T> function) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final S value = job.run(new StageContext<S, T>(context, function, null));
+                context.throwIfCancelled();
+                return function.apply(value);
+            }
+        };
+    }
+
+    /**
+     * @return a job that runs {@code job}, then the supplier {@code function} returns for its
+     * value, on the same thread. Partial values of {@code job} are dropped.
+     */
+    static <S, T> Job<T> flatMap(final Job<S> job, final Function<? super S, ? extends Supplier<? extends T>> function) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final S value = job.run(new StageContext<S, T>(context, null, null));
+                context.throwIfCancelled();
+                return function.apply(value).get();
+            }
+        };
+    }
+
+    /**
+     * @return a job that runs {@code job}, and fails with {@link NoSuchElementException} if its
+     * value does not match {@code predicate}
+     */
+    static <T> Job<T> filter(final Job<T> job, final Predicate<? super T> predicate) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final T value = job.run(context);
+                if (!predicate.test(value)) {
+                    throw new NoSuchElementException("Result was filtered out");
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * @return a job that runs {@code job}, then compares its list to the one loaded before, if any,
+     * on the same thread. Partial values of {@code job} are dropped. The job may revalidate the
+     * list loaded before : if not modified, the previous result is returned as is.
+     */
+    static <E> Job<ListDiff<E>> diff(final Job<List<E>> job, final ChangeSet.ItemCallback<? super E> callback) {
+        return new Job<ListDiff<E>>() {
+            @Override
+            ListDiff<E> run(final LoadContext<ListDiff<E>> context) throws Exception {
+                final Revalidation<ListDiff<E>> revalidation = context.revalidation();
+                final ListDiff<E> previous = revalidation != null ? revalidation.getPrevious() : null;
+                final Revalidation<List<E>> listRevalidation = previous != null
+                        ? new Revalidation<>(Result.success(previous.getList()), revalidation.getValidator())
+                        : null;
+                final List<E> list = job.run(new StageContext<List<E>, ListDiff<E>>(context, null, listRevalidation));
+                context.throwIfCancelled();
+                if (previous == null) {
+                    return new ListDiff<>(list, null);
+                }
+                revalidation.setValidator(listRevalidation.newValidator());
+                if (listRevalidation.isNotModified()) {
+                    return revalidation.notModified();
+                }
+                if (list == previous.getList()) {
+                    // Changed in place : there is nothing left to compare it to
+                    return new ListDiff<>(list, null);
+                }
+                return new ListDiff<>(list, ChangeSet.compute(previous.getList(), list, callback));
+            }
+        };
+    }
+
+    /**
+     * @return a job that runs the suppliers concurrently on the task's executor, and combines
+     * their values. The first failure is thrown without waiting for the other suppliers.
+     */
+    static <A, B, T> Job<T> zip(final Supplier<A> a, final Supplier<B> b, final Combiner<? super A, ? super B, T> combiner) {
+        return new Job<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            T run(final LoadContext<T> context) throws Exception {
+                final List<Object> values = fork(context, a, b);
+                return combiner.combine((A) values.get(0), (B) values.get(1));
+            }
+        };
+    }
+
+    /**
+     * @see #zip(Supplier, Supplier, Combiner)
+     */
+    static <A, B, C, T> Job<T> zip(final Supplier<A> a, final Supplier<B> b, final Supplier<C> c, final Combiner3<? super A, ? super B, ? super C, T> combiner) {
+        return new Job<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            T run(final LoadContext<T> context) throws Exception {
+                final List<Object> values = fork(context, a, b, c);
+                return combiner.combine((A) values.get(0), (B) values.get(1), (C) values.get(2));
+            }
+        };
+    }
+
+    /**
+     * @see #zip(Supplier, Supplier, Combiner)
+     */
+    static <A, B, C, D, T> Job<T> zip(final Supplier<A> a, final Supplier<B> b, final Supplier<C> c, final Supplier<D> d, final Combiner4<? super A, ? super B, ? super C, ? super D, T> combiner) {
+        return new Job<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            T run(final LoadContext<T> context) throws Exception {
+                final List<Object> values = fork(context, a, b, c, d);
+                return combiner.combine((A) values.get(0), (B) values.get(1), (C) values.get(2), (D) values.get(3));
+            }
+        };
+    }
+
+    /**
+     * @param chunkSize how many inputs each chunk holds, or 0 to split the inputs in a few chunks
+     *                  per core
+     * @return a job that splits the inputs in chunks, runs the chunk function on each of them
+     * concurrently on the {@link LoaderExecutors#cpu() cpu pool}, and reduces the values of the
+     * chunks, in the order of the inputs. The first failure is thrown without waiting for the other
+     * chunks ; chunks that did not start yet are dropped when the load is cancelled.
+     */
+    static <I, C, T> Job<T> parallel(final List<I> inputs, final int chunkSize, final Function<? super List<I>, ? extends C> chunkFunction,
+                                     final Function<? super List<C>, ? extends T> reducer) {
+        return new Job<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            T run(final LoadContext<T> context) throws Exception {
+                // Inputs are read once : they must not change while chunks run
+                final List<I> snapshot = new ArrayList<>(inputs);
+                final int size = chunkSize > 0 ? chunkSize : defaultChunkSize(snapshot.size());
+                final Fork fork = new Fork(LoaderExecutors.cpu(), context, context.priority());
+                for (int start = 0; start < snapshot.size(); start += size) {
+                    final List<I> chunk = snapshot.subList(start, Math.min(start + size, snapshot.size()));
+                    fork.add(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            return chunkFunction.apply(chunk);
+                        }
+                    });
+                }
+                final List<C> values = (List<C>) fork.join();
+                context.throwIfCancelled();
+                return reducer.apply(values);
+            }
+        };
+    }
+
+    /**
+     * @return the size of chunks giving each core a few of them, so that a slow chunk does not
+     * leave the other cores idle
+     */
+    private static int defaultChunkSize(final int inputCount) {
+        final int chunkCount = Runtime.getRuntime().availableProcessors() * CHUNKS_PER_CORE;
+        return Math.max(1, (inputCount + chunkCount - 1) / chunkCount);
+    }
+
+    private static List<Object> fork(final LoadContext<?> context, final Supplier<?>... suppliers) throws Exception {
+        final Fork fork = new Fork(context.executor(), context, context.priority());
+        for (final Supplier<?> supplier : suppliers) {
+            fork.add(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    return supplier.get();
+                }
+            });
+        }
+        return fork.join();
+    }
+
+    /**
+     * Context of the job before a stage : partial values go through the stage's function, if any,
+     * and there is something to revalidate only if the stage knows the value before it.
+     */
+    private static class StageContext<S, T> implements LoadContext<S> {
+        private final LoadContext<T> mParent;
+        private final Function<? super S, ? extends T> mFunction;
+        private final Revalidation<S> mRevalidation;
+
+        StageContext(final LoadContext<T> parent, final Function<? super S, ? extends T> function, final Revalidation<S> revalidation) {
+            mParent = parent;
+            mFunction = function;
+            mRevalidation = revalidation;
+        }
+
+        @Override
+        public void emit(final S partial) {
+            if (mFunction == null) {
+                return;
+            }
+            try {
+                mParent.emit(mFunction.apply(partial));
+            } catch (Exception e) {
+                // A partial value is not worth failing the load : the final one will tell
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mParent.isCancelled();
+        }
+
+        @Override
+        public void throwIfCancelled() {
+            mParent.throwIfCancelled();
+        }
+
+        @Override
+        public Executor executor() {
+            return mParent.executor();
+        }
+
+        @Override
+        public int priority() {
+            return mParent.priority();
+        }
+
+        @Override
+        public Revalidation<S> revalidation() {
+            return mRevalidation;
+        }
+    }
+}
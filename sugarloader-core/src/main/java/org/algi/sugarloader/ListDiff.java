@@ -0,0 +1,63 @@
+package org.algi.sugarloader;
+
+import java.util.List;
+
+/**
+ * The result of a loader using {@code diff} : the loaded list, and what changed since the list
+ * delivered before, computed on background thread.
+ * <pre>{@code
+ *      .onSuccess(diff -> {
+ *          mAdapter.setItems(diff.getList());
+ *          if (diff.isIncremental()) {
+ *              diff.getChanges().dispatchTo(mAdapterNotifier);
+ *          } else {
+ *              mAdapter.notifyDataSetChanged();
+ *          }
+ *      })
+ * }
+ * </pre>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class ListDiff<E> {
+
+    private final List<E> mList;
+    private final ChangeSet mChanges;
+    private boolean mDelivered;
+
+    /**
+     * @param changes the changes from the previous list, or null if there is none
+     */
+    ListDiff(final List<E> list, final ChangeSet changes) {
+        mList = list;
+        mChanges = changes;
+    }
+
+    public List<E> getList() {
+        return mList;
+    }
+
+    /**
+     * @return the changes from the list delivered before, only meaningful if
+     * {@link #isIncremental()}, empty otherwise
+     */
+    public ChangeSet getChanges() {
+        return mChanges != null && !mDelivered ? mChanges : ChangeSet.NONE;
+    }
+
+    /**
+     * @return false if the whole list must be displayed again : on the first load, when the list
+     * was changed in place (the very same list was loaded again, without being revalidated), or
+     * when delivered again (e.g. after a configuration change, to a new UI)
+     */
+    public boolean isIncremental() {
+        return mChanges != null && !mDelivered;
+    }
+
+    /**
+     * Called once handled : the changes do not apply to the next handlers anymore.
+     */
+    void delivered() {
+        mDelivered = true;
+    }
+}
@@ -0,0 +1,24 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Emitter;
+
+import java.util.concurrent.Executor;
+
+/**
+ * What a {@link Job} may use from the task running it.
+ *
+ * @author Alexandre Gianquinto
+ */
+interface LoadContext<T> extends Emitter<T>, CancellationToken, Prioritized {
+
+    /**
+     * @return the executor of the task, where the job may fork sub-operations
+     */
+    Executor executor();
+
+    /**
+     * @return what the job may revalidate instead of loading again, or null if there is nothing to
+     * revalidate (e.g. the job runs before a stage, and its previous value is unknown)
+     */
+    Revalidation<T> revalidation();
+}
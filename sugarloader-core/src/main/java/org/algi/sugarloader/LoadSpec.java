@@ -0,0 +1,79 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+import org.algi.sugarloader.function.Weigher;
+
+import java.util.concurrent.Executor;
+
+/**
+ * What a loader needs to run its background operation, as configured by {@link SugarLoader}.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class LoadSpec<T> {
+
+    /** Name of the loader, as reported to {@link LoaderMetrics} */
+    final String name;
+
+    /** The background operation */
+    final Job<T> job;
+
+    /**
+     * Optional source of a previous result, read in background and delivered before
+     * {@link #job} is run. Returns null when it has nothing to deliver.
+     */
+    final Supplier<Result<T>> preview;
+
+    final Executor executor;
+
+    /** Priority of the loader while it is visible, see {@link LoaderEngine#setVisible(boolean)} */
+    final int priority;
+
+    /** Whether the host of the loader was visible when it was created */
+    final boolean visible;
+
+    /** Where results are delivered */
+    final LoaderHost host;
+
+    /** Optional stale result the loader starts with, delivered while the actual load runs */
+    final Result<T> seed;
+
+    /**
+     * Optional last successful result of the loader this one replaces, and its validator : the
+     * first load may revalidate it, see {@link Revalidation}
+     */
+    final Result<T> previous;
+    final String validator;
+
+    /** Keys of the {@link InvalidationBus} the loader reloads on, possibly none */
+    final String[] dependsOn;
+
+    /** Optional serialized result, to be saved with the state of the host */
+    final PersistedState<T> persisted;
+
+    /** How long the loader keeps its result */
+    final ResultRetention retention;
+
+    /** Estimates the size of retained results, to release the heaviest first */
+    final Weigher<T> weigher;
+
+    LoadSpec(final String name, final Job<T> job, final Supplier<Result<T>> preview, final Executor executor, final int priority,
+             final boolean visible, final LoaderHost host, final Result<T> seed, final Result<T> previous,
+             final String validator, final String[] dependsOn,
+             final PersistedState<T> persisted, final ResultRetention retention, final Weigher<T> weigher) {
+        this.name = name;
+        this.job = job;
+        this.preview = preview;
+        this.executor = executor;
+        this.priority = priority;
+        this.visible = visible;
+        this.host = host;
+        this.seed = seed;
+        this.previous = previous;
+        this.validator = validator;
+        this.dependsOn = dependsOn;
+        this.persisted = persisted;
+        this.retention = retention;
+        this.weigher = weigher;
+    }
+}
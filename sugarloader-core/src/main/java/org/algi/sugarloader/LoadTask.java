@@ -0,0 +1,177 @@
+package org.algi.sugarloader;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One execution of a background supplier. The supplier runs on the given executor, and its result
+ * is posted back to the loader through its {@link LoaderHost}, which decides whether it is still wanted.
+ * A preview result, if any, is posted first as an update, and so are the partial values emitted
+ * by the supplier.
+ * <p>
+ * Partial values are coalesced : if the supplier emits faster than the host thread consumes, only
+ * the latest pending one is posted.
+ * </p>
+ * <p>
+ * A value the job revalidated as not modified is delivered as the previous result itself.
+ * </p>
+ * <p>
+ * The task is also the context of its job, and the cancellation token of its supplier : cancellation is cooperative, the
+ * running thread is never interrupted.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+final class LoadTask<T> implements Runnable, LoadContext<T> {
+
+    interface Callback<T> {
+        void onLoadTaskUpdate(LoadTask<T> task, Result<T> result);
+
+        void onLoadTaskFinished(LoadTask<T> task, Result<T> result);
+    }
+
+    /** Value of {@link #mPendingPartial} when no partial value is waiting to be posted */
+    private static final Object NO_PARTIAL = new Object();
+
+    private final LoadSpec<T> mSpec;
+    private final boolean mWithPreview;
+    private final Callback<T> mCallback;
+    private final Revalidation<T> mRevalidation;
+    private volatile boolean mCancelled;
+    private volatile int mPriority;
+    private long mEnqueuedAt;
+    private final AtomicReference<Object> mPendingPartial = new AtomicReference<>(NO_PARTIAL);
+
+    LoadTask(final LoadSpec<T> spec, final int priority, final boolean withPreview, final Revalidation<T> revalidation,
+             final Callback<T> callback) {
+        mSpec = spec;
+        mPriority = priority;
+        mWithPreview = withPreview;
+        mRevalidation = revalidation;
+        mCallback = callback;
+    }
+
+    void execute() {
+        mEnqueuedAt = System.nanoTime();
+        mSpec.executor.execute(this);
+    }
+
+    @Override
+    public Executor executor() {
+        return mSpec.executor;
+    }
+
+    @Override
+    public int priority() {
+        return mPriority;
+    }
+
+    @Override
+    public Revalidation<T> revalidation() {
+        return mRevalidation;
+    }
+
+    /**
+     * Change the priority of this task : if it is still waiting for a thread, it moves in its
+     * executor's queue.
+     */
+    void setPriority(final int priority) {
+        if (priority == mPriority) {
+            return;
+        }
+        mPriority = priority;
+        if (mSpec.executor instanceof MonitoredExecutor) {
+            ((MonitoredExecutor) mSpec.executor).reprioritize(this);
+        }
+    }
+
+    /**
+     * Mark this task as cancelled : it is removed from its executor's queue if it has not started
+     * yet, and its supplier is told through {@link #isCancelled()} otherwise.
+     */
+    void cancel() {
+        mCancelled = true;
+        if (mSpec.executor instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) mSpec.executor).remove(this);
+        }
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public void throwIfCancelled() {
+        if (mCancelled) {
+            throw new CancellationException("Load was cancelled");
+        }
+    }
+
+    @Override
+    public void run() {
+        if (mCancelled) {
+            return;
+        }
+        final long start = System.nanoTime();
+        if (mWithPreview && mSpec.preview != null) {
+            final Result<T> preview = preview();
+            if (preview != null) {
+                post(preview, false);
+            }
+        }
+        Result<T> result;
+        try {
+            result = mRevalidation.resultOf(mSpec.job.run(this));
+        } catch (Exception e) {
+            result = Result.error(e);
+        }
+        if (mCancelled) {
+            // Cancelled or superseded : neither a success nor a failure
+            return;
+        }
+        LoaderMetrics.listener().onBackgroundFinished(mSpec.name, start - mEnqueuedAt, System.nanoTime() - start, result.isSuccess);
+        post(result, true);
+    }
+
+    @Override
+    public void emit(final T partial) {
+        if (mCancelled) {
+            return;
+        }
+        if (mPendingPartial.getAndSet(partial) == NO_PARTIAL) {
+            mSpec.host.post(new Runnable() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public void run() {
+                    final Object latest = mPendingPartial.getAndSet(NO_PARTIAL);
+                    mCallback.onLoadTaskUpdate(LoadTask.this, Result.partial((T) latest));
+                }
+            });
+        }
+    }
+
+    private Result<T> preview() {
+        try {
+            return mSpec.preview.get();
+        } catch (Exception e) {
+            // Nothing to show before the actual load
+            return null;
+        }
+    }
+
+    private void post(final Result<T> result, final boolean finished) {
+        mSpec.host.post(new Runnable() {
+            @Override
+            public void run() {
+                if (finished) {
+                    mCallback.onLoadTaskFinished(LoadTask.this, result);
+                } else {
+                    mCallback.onLoadTaskUpdate(LoadTask.this, result);
+                }
+            }
+        });
+    }
+}
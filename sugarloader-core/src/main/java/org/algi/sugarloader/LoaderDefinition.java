@@ -0,0 +1,962 @@
+package org.algi.sugarloader;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.UiThread;
+
+import org.algi.sugarloader.function.Call;
+import org.algi.sugarloader.function.CancellableSupplier;
+import org.algi.sugarloader.function.Combiner;
+import org.algi.sugarloader.function.Combiner3;
+import org.algi.sugarloader.function.Combiner4;
+import org.algi.sugarloader.function.Consumer;
+import org.algi.sugarloader.function.Function;
+import org.algi.sugarloader.function.Predicate;
+import org.algi.sugarloader.function.RevalidatingSupplier;
+import org.algi.sugarloader.function.StaleConsumer;
+import org.algi.sugarloader.function.StreamingSupplier;
+import org.algi.sugarloader.function.Supplier;
+import org.algi.sugarloader.function.Weigher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a loader does, and how its result is handled : the builder part of {@code SugarLoader},
+ * independent from Android. The same definition may be run by {@code SugarLoader} on Android, or
+ * by {@link HostedLoader} on any JVM, e.g. :
+ * <pre>{@code
+ *      static <L extends LoaderDefinition<Profile, L>> L profile(L loader, ProfileService service) {
+ *          return loader.background(() -> service.fetchProfile())
+ *                  .cache(5, TimeUnit.MINUTES);
+ *      }
+ * }
+ * </pre>
+ *
+ * @param <T> the type of result
+ * @param <L> the type of loader, returned by builder methods
+ * @author Alexandre Gianquinto
+ */
+public abstract class LoaderDefinition<T, L extends LoaderDefinition<T, L>> {
+
+    final int id;
+
+    final String name;
+
+    LoaderDefinition(final int id, final String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    @NonNull
+    private Job<T> mBackground = Job.of(Nothing.<T>doNothing());
+
+    @NonNull
+    private StaleConsumer<T> mSuccessConsumer = Nothing.doNothing();
+
+    @NonNull
+    private Consumer<T> mPartialConsumer = Nothing.doNothing();
+
+    @NonNull
+    private Consumer<Throwable> mErrorConsumer = new Consumer<Throwable>() {
+        @Override
+        public void accept(final Throwable t) {
+            throw new UnhandledException(t);
+        }
+    };
+
+    @NonNull
+    private Call mBefore = Nothing.doNothing();
+
+    @NonNull
+    private Call mBeforeDeliver = Nothing.doNothing();
+
+    @NonNull
+    private Call mBeforeCreate = Nothing.doNothing();
+
+    @NonNull
+    private Executor mExecutor = LoaderExecutors.io();
+
+    private int mPriority;
+
+    /** Whether the host of the loader is displayed */
+    private boolean mVisible = true;
+
+    @Nullable
+    private String mSharedKey;
+
+    private long mCacheTtlMillis;
+
+    @NonNull
+    private Weigher<T> mCacheWeigher = MemoryCache.unitWeigher();
+
+    @Nullable
+    private DiskCache mDiskCache;
+
+    @Nullable
+    private ResultSerializer<T> mDiskSerializer;
+
+    private long mDiskMaxAgeMillis;
+
+    private boolean mStaleWhileRevalidate;
+
+    private long mTimeoutMillis;
+
+    @Nullable
+    private RetryPolicy mRetryPolicy;
+
+    private long mDebounceMillis;
+
+    private boolean mDeliverOnFrame;
+
+    @NonNull
+    private String[] mDependsOn = new String[0];
+
+    @NonNull
+    private ResultRetention mRetention = ResultRetention.KEEP;
+
+    @NonNull
+    private Weigher<T> mRetentionWeigher = MemoryCache.unitWeigher();
+
+    /** Debounced restart, waiting to be run */
+    @Nullable
+    private Runnable mPendingRestart;
+
+    /**
+     * Current loader of this instance : the last one created, the only one allowed to deliver when
+     * debouncing, or the one init reconnected to
+     */
+    @Nullable
+    private Object mLatestLoader;
+
+    /** Stale result for the next loader to be created */
+    @Nullable
+    private Result<T> mSeed;
+
+    @Nullable
+    private ResultSerializer<T> mPersistSerializer;
+
+    private int mPersistMaxBytes;
+
+    /** Result saved before the process was killed, for the next loader to be created */
+    private byte[] mRestoredBytes;
+    private File mRestoredFile;
+
+    /** Result of the replaced loader, and its validator, for the next loader to revalidate */
+    @Nullable
+    private Result<T> mPrevious;
+    private String mPreviousValidator;
+
+    /**
+     * Start a background operation right now, for a loader that does not exist yet : typically
+     * from the screen launching the one that displays the result, so the load overlaps the screen
+     * transition. The first load of the loader whose {@link #sharedKey(String) shared key} (or name,
+     * if it has none) is {@code key} takes the prefetched value instead of running its own
+     * operation, waiting for it if needed. If the prefetch fails, the loader runs its own operation.
+     * <p>
+     * A prefetched value is used only once, and dropped if no loader claims it within 30 seconds.
+     * </p>
+     *
+     * @param key      the shared key or name of the destination loader
+     * @param supplier the operation to be executed, producing the type of result of the destination loader
+     */
+    public static void prefetch(@NonNull String key, @NonNull Supplier<?> supplier) {
+        prefetch(key, supplier, LoaderExecutors.io());
+    }
+
+    /**
+     * Same as {@link #prefetch(String, Supplier)}, on the given executor.
+     */
+    public static void prefetch(@NonNull String key, @NonNull Supplier<?> supplier, @NonNull Executor executor) {
+        Prefetches.start(key, supplier, executor);
+    }
+
+    /**
+     * Provide an operation to be executed on background thread.
+     *
+     * @param backgroundSupplier the operation to be executed. e.g. {@code () -> mService.fetchData(p1, p2)}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L background(@NonNull Supplier<T> backgroundSupplier) {
+        mBackground = Job.of(backgroundSupplier);
+        return self();
+    }
+
+    /**
+     * Provide several independent operations to be executed concurrently on background threads
+     * (using the {@link #executor(Executor) executor} of this loader), and a function to combine
+     * their values into one result. The first error is delivered without waiting for the other
+     * operations. e.g. {@code .zip(mService::fetchUser, mService::fetchOrders, UserOrders::new)}
+     *
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public <A, B> L zip(@NonNull Supplier<A> a, @NonNull Supplier<B> b,
+                            @NonNull Combiner<? super A, ? super B, T> combiner) {
+        mBackground = Job.zip(a, b, combiner);
+        return self();
+    }
+
+    /**
+     * @see #zip(Supplier, Supplier, Combiner)
+     */
+    public <A, B, C> L zip(@NonNull Supplier<A> a, @NonNull Supplier<B> b, @NonNull Supplier<C> c,
+                               @NonNull Combiner3<? super A, ? super B, ? super C, T> combiner) {
+        mBackground = Job.zip(a, b, c, combiner);
+        return self();
+    }
+
+    /**
+     * @see #zip(Supplier, Supplier, Combiner)
+     */
+    public <A, B, C, D> L zip(@NonNull Supplier<A> a, @NonNull Supplier<B> b, @NonNull Supplier<C> c, @NonNull Supplier<D> d,
+                                  @NonNull Combiner4<? super A, ? super B, ? super C, ? super D, T> combiner) {
+        mBackground = Job.zip(a, b, c, d, combiner);
+        return self();
+    }
+
+    /**
+     * Provide an operation to be executed on background thread, that may check whether the value
+     * loaded before is still up to date instead of loading it again, e.g. with an HTTP conditional
+     * request : it is given the previous value and its validator (ETag, version...), and returns
+     * {@link Revalidation#notModified()} if it did not change. The previous result is then kept as
+     * is, and not delivered again if already displayed.
+     * <p>
+     * On {@code restart}, the previous value is the one of the replaced loader. Stages after the
+     * operation give it nothing to revalidate, but {@code diff}.
+     * </p>
+     *
+     * @param backgroundSupplier the operation to be executed, see {@link Revalidation}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L backgroundRevalidating(@NonNull RevalidatingSupplier<T> backgroundSupplier) {
+        mBackground = Job.ofRevalidating(backgroundSupplier);
+        return self();
+    }
+
+    /**
+     * Provide one big computation over a collection (decoding, parsing, scoring...) to be split in
+     * chunks run concurrently on the {@link LoaderExecutors#cpu() cpu pool}, then reduced into one
+     * result. The thread running the loader helps with chunks not picked by the pool yet, so this
+     * costs little more than a sequential run when the pool is busy. As with {@code zip}, the first
+     * error is delivered without waiting for the other chunks ; when the load is cancelled, chunks
+     * that did not start are dropped. e.g.
+     * {@code .backgroundParallel(files, chunk -> decodeAll(chunk), parts -> flatten(parts))}
+     *
+     * @param inputs        the collection, not to be modified while the loader runs
+     * @param chunkFunction computes the value of a chunk of consecutive inputs
+     * @param reducer       combines the values of every chunk, given in the order of the inputs
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public <I, C> L backgroundParallel(@NonNull List<I> inputs, @NonNull Function<? super List<I>, ? extends C> chunkFunction,
+                                       @NonNull Function<? super List<C>, ? extends T> reducer) {
+        return backgroundParallel(inputs, 0, chunkFunction, reducer);
+    }
+
+    /**
+     * Same as {@link #backgroundParallel(List, Function, Function)}, with chunks of the given size
+     * rather than a few chunks per core.
+     *
+     * @param chunkSize how many inputs each chunk holds
+     */
+    public <I, C> L backgroundParallel(@NonNull List<I> inputs, int chunkSize, @NonNull Function<? super List<I>, ? extends C> chunkFunction,
+                                       @NonNull Function<? super List<C>, ? extends T> reducer) {
+        mBackground = Job.parallel(inputs, chunkSize, chunkFunction, reducer);
+        return self();
+    }
+
+    /**
+     * Provide an operation to be executed on background thread, that may stop early when its
+     * result is not wanted anymore : when the loader is restarted, destroyed or abandoned, the
+     * token is cancelled. A cancelled operation may return anything or throw, its result is
+     * dropped anyway.
+     *
+     * @param backgroundSupplier the operation to be executed. e.g.
+     *                           {@code token -> mService.fetchPages(token::isCancelled)}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L backgroundCancellable(@NonNull CancellableSupplier<T> backgroundSupplier) {
+        mBackground = Job.ofCancellable(backgroundSupplier);
+        return self();
+    }
+
+    /**
+     * Provide an operation to be executed on background thread, that delivers partial values
+     * to {@link #onPartial(Consumer)} while computing the final one. If partial values are emitted
+     * faster than the UI thread handles them, only the latest is delivered : emit cumulative
+     * values (e.g. the rows loaded so far) rather than increments.
+     *
+     * @param backgroundSupplier the operation to be executed. e.g.
+     *                           {@code emitter -> mService.fetchRows(rows -> emitter.emit(rows))}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L backgroundStreaming(@NonNull StreamingSupplier<T> backgroundSupplier) {
+        mBackground = Job.ofStreaming(backgroundSupplier);
+        return self();
+    }
+
+    /**
+     * Check the value of the background operation on background thread, after it (and after previous
+     * stages, see {@code map}). When it does not match, a {@link java.util.NoSuchElementException}
+     * is delivered to {@link #onError(Consumer)} instead.
+     *
+     * @param predicate tells whether the value should be delivered. e.g. {@code pets -> !pets.isEmpty()}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L filter(@NonNull Predicate<? super T> predicate) {
+        mBackground = Job.filter(mBackground, predicate);
+        return self();
+    }
+
+    /**
+     * Choose the executor the background operation runs on. Default is {@link LoaderExecutors#io()},
+     * which suits blocking calls ; prefer {@link LoaderExecutors#cpu()} for parsing or computation.
+     *
+     * @param executor the executor that will run the background operation
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L executor(@NonNull Executor executor) {
+        mExecutor = executor;
+        return self();
+    }
+
+    /**
+     * When every thread of the {@link LoaderExecutors executor} is busy, loads of higher priority
+     * start first. Besides, loads of loaders whose host is stopped, or is a fragment that is not
+     * visible to the user (e.g. not the current page of a ViewPager), yield to the others : their
+     * priority is lowered by 1000 until their host is visible again. Fragment visibility is checked
+     * on {@code init}, so call it again when it changes (e.g. from {@code setUserVisibleHint}).
+     *
+     * @param priority the priority of the load, default is 0 : higher runs first
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L priority(int priority) {
+        mPriority = priority;
+        return self();
+    }
+
+    /**
+     * Bound the time each attempt of the background operation may take. When the time is up, the
+     * operation is cancelled (see {@link #backgroundCancellable}) and its thread interrupted, and
+     * the attempt fails with a {@link java.util.concurrent.TimeoutException} (which may be retried,
+     * see {@link #retry(RetryPolicy)}). Calls that ignore interrupts, like plain socket reads,
+     * should have their own timeout as well.
+     *
+     * @param timeout how long an attempt may take
+     * @param unit    the unit of {@code timeout}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L timeout(long timeout, @NonNull TimeUnit unit) {
+        mTimeoutMillis = unit.toMillis(timeout);
+        return self();
+    }
+
+    /**
+     * Retry the background operation when it fails, on background thread : only the final outcome
+     * is delivered. e.g. {@code .retry(RetryPolicy.exponential(3, 1, TimeUnit.SECONDS))}
+     *
+     * @param retryPolicy how many times to retry, how long to wait, and on which errors
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L retry(@Nullable RetryPolicy retryPolicy) {
+        mRetryPolicy = retryPolicy;
+        return self();
+    }
+
+    /**
+     * Collapse rapid calls to {@code restart} (e.g. on each keystroke of a search field) : a
+     * restart only happens once no other restart was requested for {@code millis}. Results of
+     * loaders superseded by a newer restart are never delivered, even if they were already loading.
+     *
+     * @param millis how long to wait for another restart before actually restarting
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L debounce(long millis) {
+        mDebounceMillis = millis;
+        return self();
+    }
+
+    /**
+     * Deliver results on the next frame, together with those of the other loaders delivering on
+     * frame, rather than as soon as they are loaded : when many loaders finish at about the same
+     * time, the screen is laid out once for all of them. If the handlers take too long, the
+     * remaining results are delivered on the following frame, so frames are not dropped.
+     *
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L deliverOnFrame() {
+        mDeliverOnFrame = true;
+        return self();
+    }
+
+    /**
+     * Reload when any of the given keys is invalidated through {@link InvalidationBus#invalidate},
+     * e.g. {@code .dependsOn("orders")} then {@code InvalidationBus.invalidate("orders")} once an
+     * order was written. A burst of invalidations causes a single reload ; a stopped loader reloads
+     * once started again. The result is kept until the new one is delivered.
+     *
+     * @param keys the logical keys of the data the background operation reads
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L dependsOn(@NonNull String... keys) {
+        mDependsOn = keys.clone();
+        return self();
+    }
+
+    /**
+     * Share the background operation with every other loader of the process using the same key.
+     * While an operation is running for this key, a new load waits for it and receives the same
+     * value (or error) instead of running its own supplier. Loaders sharing a key must produce the
+     * same type of result.
+     *
+     * @param sharedKey the logical key of the operation (e.g. "profile/42"), or null to disable
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L sharedKey(@Nullable String sharedKey) {
+        mSharedKey = sharedKey;
+        return self();
+    }
+
+    /**
+     * Keep successful results in the process-wide {@link MemoryCache}. While the cached result is
+     * fresh, {@code init} delivers it immediately, without creating a loader nor running the
+     * background operation ; {@code restart} always loads again.
+     * <p>
+     * Results are cached under the {@link #sharedKey(String) shared key} if any, under the loader
+     * name (or id) otherwise : in the latter case, it should be unique within the application.
+     * </p>
+     *
+     * @param ttl  how long a result stays fresh
+     * @param unit the unit of {@code ttl}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L cache(long ttl, @NonNull TimeUnit unit) {
+        mCacheTtlMillis = unit.toMillis(ttl);
+        return self();
+    }
+
+    /**
+     * Same as {@link #cache(long, TimeUnit)}, for results of different sizes.
+     *
+     * @param weigher gives the weight of a result in the cache (e.g. number of items in a list)
+     * @see MemoryCache
+     */
+    public L cache(long ttl, @NonNull TimeUnit unit, @NonNull Weigher<T> weigher) {
+        mCacheWeigher = weigher;
+        return cache(ttl, unit);
+    }
+
+    /**
+     * Choose how long the loader keeps its result once delivered, and whether it may be released
+     * under memory pressure (see {@link MemoryPressure}). A released result is loaded again the next
+     * time the loader is started. Default is {@link ResultRetention#KEEP}.
+     *
+     * @param retention when the result may be released
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L retention(@NonNull ResultRetention retention) {
+        mRetention = retention;
+        return self();
+    }
+
+    /**
+     * Same as {@link #retention(ResultRetention)}, for results of different sizes : when memory is
+     * not critically low, the heaviest results are released first.
+     *
+     * @param weigher estimates the size of a result, in the same unit for all loaders (e.g. kilobytes)
+     */
+    public L retention(@NonNull ResultRetention retention, @NonNull Weigher<T> weigher) {
+        mRetentionWeigher = weigher;
+        return retention(retention);
+    }
+
+    /**
+     * Keep successful results in a {@link DiskCache}, so they survive application restarts. When a
+     * loader is created, the stored result (if any) is read in background and delivered first,
+     * then the background operation runs and its result is delivered too.
+     * <p>
+     * Results are stored under the same key as {@link #cache(long, TimeUnit)}.
+     * </p>
+     *
+     * @param diskCache  where to store results, e.g. {@code DiskCache.open(context.getCacheDir(), "pets")}
+     * @param serializer converts results to bytes and back
+     * @param maxAge     how long a stored result may be displayed
+     * @param unit       the unit of {@code maxAge}
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L diskCache(@NonNull DiskCache diskCache, @NonNull ResultSerializer<T> serializer, long maxAge, @NonNull TimeUnit unit) {
+        mDiskCache = diskCache;
+        mDiskSerializer = serializer;
+        mDiskMaxAgeMillis = unit.toMillis(maxAge);
+        return self();
+    }
+
+    /**
+     * Keep the result across process death : it is serialized in background as soon as it is
+     * loaded, saved with the state of the activity or fragment, and delivered at once when the
+     * system recreates it, without running the background operation. Results bigger than
+     * {@code maxBytes} are written to a side file in the cache directory instead, in background as
+     * soon as they are loaded, and read in background.
+     * <p>
+     * The state is saved and restored by {@code SugarLoader.saveState} and
+     * {@code SugarLoader.restoreState}.
+     * </p>
+     *
+     * @param serializer converts results to bytes and back
+     * @param maxBytes   the biggest result saved with the state itself (which is limited to a few
+     *                   hundred kilobytes for the whole application)
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L persistAcrossProcessDeath(@NonNull ResultSerializer<T> serializer, int maxBytes) {
+        mPersistSerializer = serializer;
+        mPersistMaxBytes = maxBytes;
+        return self();
+    }
+
+    /**
+     * Deliver the last known value immediately, then the fresh one once loaded. On {@code init}
+     * without a running loader, the last known value is taken from the memory cache (even expired) ;
+     * on {@code restart}, from the loader being replaced, or from the memory cache.
+     * <p>
+     * The last known value is delivered through {@link #onSuccessOrStale(StaleConsumer)} with
+     * {@code isStale} set, and {@link #beforeStart(Call)} is not called, so there is no
+     * progress-only phase.
+     * </p>
+     *
+     * @return the builder itself, to pipe with other builder commands
+     */
+    public L staleWhileRevalidate() {
+        mStaleWhileRevalidate = true;
+        return self();
+    }
+
+    @UiThread
+    public L onSuccess(@NonNull final Consumer<T> uiThreadConsumer) {
+        mSuccessConsumer = new StaleConsumer<T>() {
+            @Override
+            public void accept(final T t, final boolean isStale) {
+                uiThreadConsumer.accept(t);
+            }
+        };
+        return self();
+    }
+
+    /**
+     * Same as {@link #onSuccess(Consumer)}, for consumers that want to know whether the value is
+     * stale (see {@link #staleWhileRevalidate()} and {@link #diskCache}). Not an overload of
+     * onSuccess, so method references such as {@code mTextView::setText} stay unambiguous.
+     */
+    @UiThread
+    public L onSuccessOrStale(@NonNull StaleConsumer<T> uiThreadConsumer) {
+        mSuccessConsumer = uiThreadConsumer;
+        return self();
+    }
+
+    /**
+     * This handler receives the partial values emitted by a
+     * {@link #backgroundStreaming(StreamingSupplier) streaming} operation, on UI thread.
+     * {@link #beforeDeliver(Call)} is not called before partial values, only before the final one.
+     */
+    @UiThread
+    public L onPartial(@NonNull Consumer<T> uiThreadConsumer) {
+        mPartialConsumer = uiThreadConsumer;
+        return self();
+    }
+
+    @UiThread
+    public L onError(@NonNull Consumer<Throwable> errorConsumer) {
+        mErrorConsumer = errorConsumer;
+        return self();
+    }
+
+
+    /**
+     * This handler will be called before loader is started.
+     */
+    public L beforeStart(@NonNull Call before) {
+        mBefore = before;
+        return self();
+    }
+
+    /**
+     * This handler will be called when loader object is effectively created. This won't happen when
+     * fragment simply bounds to existing running loader.
+     */
+    public L beforeCreateLoader(@NonNull Call beforeCreate) {
+        mBeforeCreate = beforeCreate;
+        return self();
+    }
+
+    /**
+     * This handler will be called before result is delivered, on UI Thread.
+     * This may be useful to do actions that are independant of the result (hiding a ProgressBar,
+     * showing a text, ...)
+     */
+    public L beforeDeliver(@NonNull Call before) {
+        mBeforeDeliver = before;
+        return self();
+    }
+
+    /* ******************************************
+     * Loader lifecycle, shared by adapters
+     * ******************************************/
+
+    /**
+     * Run the given restart now, or once debounced.
+     */
+    void scheduleRestart(final Runnable restart) {
+        cancelPendingRestart();
+        if (mDebounceMillis <= 0) {
+            restart.run();
+            return;
+        }
+        mPendingRestart = new Runnable() {
+            @Override
+            public void run() {
+                mPendingRestart = null;
+                restart.run();
+            }
+        };
+        host().postDelayed(mPendingRestart, mDebounceMillis);
+    }
+
+    void cancelPendingRestart() {
+        if (mPendingRestart != null) {
+            host().cancel(mPendingRestart);
+            mPendingRestart = null;
+        }
+    }
+
+    /**
+     * @return the background operation, and its stages so far
+     */
+    Job<T> background() {
+        return mBackground;
+    }
+
+    /**
+     * Give the configuration of this loader to a loader of another type of result, after a stage
+     * changing that type. Handlers and options bound to the type of result are not copied.
+     *
+     * @param loader     the new loader, with the same id and name
+     * @param background the background operation of the new loader, stage included
+     * @return the new loader
+     */
+    <R, D extends LoaderDefinition<R, D>> D transformed(final D loader, final Job<R> background) {
+        final LoaderDefinition<R, D> target = loader;
+        target.mBackground = background;
+        target.mErrorConsumer = mErrorConsumer;
+        target.mBefore = mBefore;
+        target.mBeforeDeliver = mBeforeDeliver;
+        target.mBeforeCreate = mBeforeCreate;
+        target.mExecutor = mExecutor;
+        target.mPriority = mPriority;
+        target.mVisible = mVisible;
+        target.mSharedKey = mSharedKey;
+        target.mCacheTtlMillis = mCacheTtlMillis;
+        target.mStaleWhileRevalidate = mStaleWhileRevalidate;
+        target.mTimeoutMillis = mTimeoutMillis;
+        target.mRetryPolicy = mRetryPolicy;
+        target.mDebounceMillis = mDebounceMillis;
+        target.mDeliverOnFrame = mDeliverOnFrame;
+        target.mDependsOn = mDependsOn;
+        target.mRetention = mRetention;
+        return loader;
+    }
+
+    /**
+     * Tell whether the host of the loader is displayed, so a hidden loader yields to visible ones.
+     *
+     * @param loader the existing loader, if any
+     */
+    void hostVisible(final Object loader, final boolean visible) {
+        mVisible = visible;
+        if (loader instanceof LoaderEngine.Owner) {
+            ((LoaderEngine.Owner<?>) loader).engine().setVisible(visible);
+        }
+    }
+
+    /**
+     * Called before the loader is initialized : run {@link #mBefore}, unless there is a stale result to seed the
+     * loader with, or deliver a fresh cached result if there is no loader to reconnect to.
+     *
+     * @param loader the existing loader, if any
+     * @return true if the result was delivered, and there is no need to init the loader
+     */
+    boolean beforeInit(@Nullable final Object loader) {
+        if (loader != null) {
+            LoaderMetrics.listener().onLoaderAttached(name);
+            mLatestLoader = loader;
+            // It survived : the state saved with its host is outdated
+            mRestoredBytes = null;
+            mRestoredFile = null;
+        }
+        if (loader == null) {
+            if (!mStaleWhileRevalidate) {
+                mBefore.apply();
+                // No loader to reconnect to : the cached result is enough
+                return deliverCached();
+            }
+            mSeed = cachedResult(true);
+        }
+        if (mSeed == null) {
+            mBefore.apply();
+        }
+        return false;
+    }
+
+    /**
+     * Called before the loader is restarted : keep the last result of the replaced loader, for the
+     * new one to revalidate, and run {@link #mBefore}, unless there is a stale result to seed the
+     * new loader with.
+     *
+     * @param previousLoader the loader that is about to be replaced, if any
+     */
+    @SuppressWarnings("unchecked")
+    void beforeRestart(@Nullable final Object previousLoader) {
+        mRestoredBytes = null;
+        mRestoredFile = null;
+        if (previousLoader instanceof LoaderEngine.Owner) {
+            final LoaderEngine<T> engine = ((LoaderEngine.Owner<T>) previousLoader).engine();
+            mPrevious = engine.previous();
+            mPreviousValidator = engine.validator();
+        }
+        if (mStaleWhileRevalidate) {
+            mSeed = retainedResult(previousLoader);
+            if (mSeed == null) {
+                mSeed = cachedResult(true);
+            }
+        }
+        if (mSeed == null) {
+            mBefore.apply();
+        }
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private Result<T> retainedResult(@Nullable final Object loader) {
+        if (!(loader instanceof LoaderEngine.Owner)) {
+            return null;
+        }
+        final Result<T> result = ((LoaderEngine.Owner<T>) loader).engine().retained();
+        return result != null && result.isSuccess ? result.asStale() : null;
+    }
+
+    /**
+     * Called when a loader has to be created : run {@link #mBeforeCreate}.
+     *
+     * @param stateDirectory where to write the results too big to be saved with the state of the
+     *                       host, see {@link #persistAcrossProcessDeath}, null if they are not saved
+     * @return what the new loader needs to run
+     */
+    LoadSpec<T> createSpec(@Nullable final File stateDirectory) {
+        mBeforeCreate.apply();
+        Result<T> seed = mSeed;
+        PersistedState<T> persisted = null;
+        if (mPersistSerializer != null) {
+            byte[] bytes = mRestoredBytes;
+            final Result<T> restored = restoredResult(bytes);
+            if (restored != null) {
+                // Fresh : no need to load it again
+                seed = restored;
+            } else {
+                bytes = null;
+            }
+            persisted = new PersistedState<>(mPersistSerializer, mPersistMaxBytes, bytes, mRestoredFile, stateDirectory);
+        }
+        mRestoredBytes = null;
+        mRestoredFile = null;
+        final Result<T> previous = mPrevious;
+        final String validator = mPreviousValidator;
+        mSeed = null;
+        mPrevious = null;
+        mPreviousValidator = null;
+        LoaderMetrics.listener().onLoaderCreated(name);
+        final Job<T> job = persisted != null ? persisted.persisting(backgroundJob()) : backgroundJob();
+        return new LoadSpec<>(name, job, diskPreview(), mExecutor, mPriority, mVisible, host(), seed, previous,
+                validator, mDependsOn, persisted, mRetention, mRetentionWeigher);
+    }
+
+    /**
+     * @return the serialized result of the current loader, if it persists it
+     */
+    PersistedState<T> persistedState() {
+        if (!(mLatestLoader instanceof LoaderEngine.Owner)) {
+            return null;
+        }
+        @SuppressWarnings("unchecked")
+        final LoaderEngine<T> engine = ((LoaderEngine.Owner<T>) mLatestLoader).engine();
+        return engine.persistedState();
+    }
+
+    /**
+     * Give the result saved before the process was killed, to the next loader created : either
+     * its bytes, or the side file they were written to.
+     */
+    void restoreState(final byte[] bytes, final File file) {
+        mRestoredBytes = bytes;
+        mRestoredFile = file;
+    }
+
+    /**
+     * @return the result restored from the given bytes, deserialized on the calling thread (they
+     * are small), or null if there is none
+     */
+    private Result<T> restoredResult(final byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return Result.success(mPersistSerializer.deserialize(bytes));
+        } catch (IOException e) {
+            // Corrupted : load it again
+            return null;
+        }
+    }
+
+    /**
+     * @param loader the loader just created from {@link #createSpec(File)}
+     */
+    void loaderCreated(final Object loader) {
+        mLatestLoader = loader;
+    }
+
+    /**
+     * Deliver a result of the given loader to the handlers, unless the loader was superseded by a
+     * newer one.
+     */
+    void dispatch(final Object loader, final Result<T> result) {
+        if (result.isReleased() || isSuperseded(loader)) {
+            return;
+        }
+        if (!mDeliverOnFrame) {
+            deliver(result);
+            return;
+        }
+        host().postOnFrame(new Runnable() {
+            @Override
+            public void run() {
+                // The loader may have been reset or replaced while waiting for the frame
+                if (!isSuperseded(loader) && (!(loader instanceof LoaderEngine.Target) || ((LoaderEngine.Target<?>) loader).isActive())) {
+                    deliver(result);
+                }
+            }
+        });
+    }
+
+    private boolean isSuperseded(final Object loader) {
+        return mDebounceMillis > 0 && mLatestLoader != null && loader != mLatestLoader;
+    }
+
+    /**
+     * @return the background operation, wrapped according to builder options
+     */
+    private Job<T> backgroundJob() {
+        Job<T> job = mBackground;
+        if (mTimeoutMillis > 0) {
+            job = Timeouts.limit(job, mTimeoutMillis);
+        }
+        if (mRetryPolicy != null) {
+            job = mRetryPolicy.retrying(job);
+        }
+        job = Prefetches.claiming(cacheKey(), job);
+        if (mDiskCache != null) {
+            job = mDiskCache.caching(cacheKey(), mDiskMaxAgeMillis, mDiskSerializer, job);
+        }
+        if (isCached()) {
+            job = MemoryCache.shared().caching(cacheKey(), mCacheTtlMillis, mCacheWeigher, job);
+        }
+        if (mSharedKey != null) {
+            job = SharedLoads.share(mSharedKey, job);
+        }
+        return job;
+    }
+
+    private Supplier<Result<T>> diskPreview() {
+        if (mDiskCache == null) {
+            return null;
+        }
+        final DiskCache diskCache = mDiskCache;
+        final ResultSerializer<T> serializer = mDiskSerializer;
+        final String key = cacheKey();
+        return new Supplier<Result<T>>() {
+            @Override
+            public Result<T> get() {
+                return diskCache.get(key, serializer);
+            }
+        };
+    }
+
+    private boolean isCached() {
+        return mCacheTtlMillis > 0;
+    }
+
+    private String cacheKey() {
+        return mSharedKey != null ? mSharedKey : name;
+    }
+
+    /**
+     * Deliver the cached result, if caching is enabled and a fresh result is available.
+     *
+     * @return true if a result was delivered
+     */
+    private boolean deliverCached() {
+        final Result<T> cached = cachedResult(false);
+        if (cached == null) {
+            return false;
+        }
+        deliver(cached);
+        return true;
+    }
+
+    /**
+     * @param stale true to get the result even if it has expired, marked as stale
+     * @return the result from memory cache, if caching is enabled and a result is available
+     */
+    private Result<T> cachedResult(final boolean stale) {
+        if (!isCached()) {
+            return null;
+        }
+        final Result<T> cached = MemoryCache.shared().get(cacheKey(), stale);
+        return cached != null && stale ? cached.asStale() : cached;
+    }
+
+    private void deliver(final Result<T> tResult) {
+        if (tResult.isPartial) {
+            mPartialConsumer.accept(tResult.result);
+            return;
+        }
+        final long start = System.nanoTime();
+        mBeforeDeliver.apply();
+        if (tResult.result instanceof Pager) {
+            // Next pages are loaded the same way as the first one
+            ((Pager<?, ?>) tResult.result).attach(host(), mExecutor);
+        }
+        try {
+            if (tResult.isSuccess) {
+                mSuccessConsumer.accept(tResult.result, tResult.isStale);
+            } else {
+                mErrorConsumer.accept(tResult.error);
+            }
+        } catch (ClassCastException e) {
+            throw new IllegalStateException("Unexpected result delivered to this loader : did you forget to name it properly or does it have the same name as another loader inside the same instance ?", e);
+        }
+        if (tResult.result instanceof ListDiff) {
+            // Its changes were applied : delivered again, the whole list has to be displayed
+            ((ListDiff<?>) tResult.result).delivered();
+        }
+        LoaderMetrics.listener().onDelivered(name, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the loader itself, typed for builder methods
+     */
+    abstract L self();
+
+    /**
+     * @return the thread the loader lives on
+     */
+    abstract LoaderHost host();
+}
@@ -0,0 +1,322 @@
+package org.algi.sugarloader;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * What a loader does, whatever the loader framework : it keeps the last result, runs a
+ * {@link LoadTask} when there is none (or only a stale one), and forwards the results of the
+ * current task to its target, dropping those of cancelled or superseded tasks.
+ * <p>
+ * While the loader is stopped or hidden, its task yields to the others : its priority is lowered
+ * by {@link #HIDDEN_PENALTY}, and restored once the loader is visible again.
+ * </p>
+ * <p>
+ * The loader is registered to the {@link InvalidationBus} under the keys it depends on, from its
+ * creation to its reset : once they are invalidated, its target is told that its content changed.
+ * </p>
+ * <p>
+ * Each load may {@link Revalidation revalidate} the last successful result : if the job returns
+ * it as not modified while it is displayed, nothing is delivered.
+ * </p>
+ * <p>
+ * Depending on its {@link ResultRetention}, the result may be released while the loader is stopped :
+ * the target is then given {@link Result#released()}, so the loader framework forgets the result
+ * too, and the loader loads again once started.
+ * </p>
+ * <p>
+ * Not thread-safe : every method must be called on the {@link LoaderHost} thread, but those
+ * called by {@link InvalidationBus} and {@link MemoryPressure}.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+final class LoaderEngine<T> implements LoadTask.Callback<T>, InvalidationBus.Subscriber {
+
+    /**
+     * The loader the engine works for.
+     */
+    interface Target<T> {
+        /**
+         * @return false once the loader was abandoned or reset : results are not wanted anymore
+         */
+        boolean isActive();
+
+        void deliverResult(Result<T> result);
+
+        /**
+         * Called when a key the loader depends on was invalidated : the loader should load again
+         * now if it is started, or as soon as it is started again.
+         */
+        void onContentChanged();
+    }
+
+    /**
+     * A loader backed by an engine.
+     */
+    interface Owner<T> {
+        LoaderEngine<T> engine();
+    }
+
+    /** How much the priority of a stopped or hidden loader is lowered */
+    static final int HIDDEN_PENALTY = 1000;
+
+    private final LoadSpec<T> mSpec;
+    private final Target<T> mTarget;
+    private volatile Result<T> mRetained;
+    private volatile int mRetainedWeight;
+    private LoadTask<T> mTask;
+    /** Last successful result, to be revalidated by the next load, and its validator */
+    private Result<T> mPrevious;
+    private String mValidator;
+    private volatile boolean mStarted = true;
+    private boolean mVisible;
+
+    /** Whether an invalidation is waiting for {@link #mContentChanged} to be run */
+    private final AtomicBoolean mInvalidated = new AtomicBoolean();
+
+    private final Runnable mContentChanged = new Runnable() {
+        @Override
+        public void run() {
+            mInvalidated.set(false);
+            if (mTarget.isActive()) {
+                mTarget.onContentChanged();
+            }
+        }
+    };
+
+    private final Runnable mRelease = new Runnable() {
+        @Override
+        public void run() {
+            if (!mStarted) {
+                release();
+            }
+        }
+    };
+
+    LoaderEngine(final LoadSpec<T> spec, final Target<T> target) {
+        mSpec = spec;
+        mTarget = target;
+        mRetained = spec.seed;
+        holdPager(mRetained);
+        mPrevious = spec.previous;
+        mValidator = spec.validator;
+        mVisible = spec.visible;
+        if (spec.dependsOn.length > 0) {
+            InvalidationBus.register(spec.dependsOn, this);
+        }
+        if (spec.retention != ResultRetention.KEEP) {
+            mRetainedWeight = weigh(mRetained);
+            MemoryPressure.register(this);
+        }
+    }
+
+    /**
+     * @param started false while the host (activity or fragment) of the loader is stopped
+     */
+    void setStarted(final boolean started) {
+        mStarted = started;
+        updatePriority();
+        if (!started && mSpec.retention == ResultRetention.DROP_WHEN_STOPPED) {
+            release();
+        }
+    }
+
+    /**
+     * @param visible false while the host of the loader is not displayed, e.g. a fragment of a
+     *                ViewPager that is not the current page
+     */
+    void setVisible(final boolean visible) {
+        mVisible = visible;
+        updatePriority();
+    }
+
+    /**
+     * @return the last result delivered by this loader (or its seed), if any
+     */
+    Result<T> retained() {
+        return mRetained;
+    }
+
+    /**
+     * @return the last successful result, to be revalidated by the next load, if any
+     */
+    Result<T> previous() {
+        return mPrevious;
+    }
+
+    /**
+     * @return the validator of {@link #previous()}, if any
+     */
+    String validator() {
+        return mValidator;
+    }
+
+    /**
+     * @return the serialized result of the loader, if it persists it
+     */
+    PersistedState<T> persistedState() {
+        return mSpec.persisted;
+    }
+
+    /**
+     * @return true if the loader has no result, or a stale one, and is not loading yet
+     */
+    boolean needsLoad() {
+        return (mRetained == null || mRetained.isStale) && mTask == null;
+    }
+
+    /**
+     * Cancel the current task, if any, and run a new one.
+     */
+    void load() {
+        cancel();
+        // A preview is only useful when there is nothing to show yet
+        mTask = new LoadTask<>(mSpec, priority(), mRetained == null, new Revalidation<>(mPrevious, mValidator), this);
+        mTask.execute();
+    }
+
+    /**
+     * Drop the running task at once : its supplier is told through the cancellation token, so
+     * there is no pending cancellation to wait for.
+     */
+    void cancel() {
+        if (mTask != null) {
+            mTask.cancel();
+            mTask = null;
+        }
+    }
+
+    void reset() {
+        cancel();
+        releasePager(mRetained);
+        mRetained = null;
+        mPrevious = null;
+        if (mSpec.dependsOn.length > 0) {
+            InvalidationBus.unregister(mSpec.dependsOn, this);
+            mSpec.host.cancel(mContentChanged);
+        }
+        if (mSpec.retention != ResultRetention.KEEP) {
+            MemoryPressure.unregister(this);
+            mSpec.host.cancel(mRelease);
+        }
+    }
+
+    /**
+     * Keep the given result, once delivered, unless it is partial.
+     */
+    void retain(final Result<T> result) {
+        if (!result.isPartial && !result.isReleased()) {
+            if (mRetained == null || mRetained.result != result.result) {
+                releasePager(mRetained);
+                holdPager(result);
+            }
+            mRetained = result;
+            if (mSpec.retention != ResultRetention.KEEP) {
+                mRetainedWeight = weigh(result);
+            }
+        }
+    }
+
+    /**
+     * @return true if the result may be released now, from any thread
+     */
+    boolean isReleasable() {
+        return !mStarted && mRetained != null;
+    }
+
+    /**
+     * @return the estimated size of the retained result, from any thread
+     */
+    int retainedWeight() {
+        return mRetainedWeight;
+    }
+
+    /**
+     * Release the result on the loader thread, from any thread, if the loader is still stopped by then.
+     */
+    void releaseLater() {
+        mSpec.host.post(mRelease);
+    }
+
+    private void release() {
+        if (mRetained == null) {
+            return;
+        }
+        releasePager(mRetained);
+        mRetained = null;
+        mRetainedWeight = 0;
+        mPrevious = null;
+        mValidator = null;
+        if (mTarget.isActive()) {
+            mTarget.deliverResult(Result.<T>released());
+        }
+    }
+
+    /**
+     * A pager may be the result of several loaders, seeded from the same cache or previous loader :
+     * its page loads are cancelled once none of them holds it.
+     */
+    private static void holdPager(final Result<?> result) {
+        if (result != null && result.result instanceof Pager) {
+            ((Pager<?, ?>) result.result).hold();
+        }
+    }
+
+    private static void releasePager(final Result<?> result) {
+        if (result != null && result.result instanceof Pager) {
+            ((Pager<?, ?>) result.result).release();
+        }
+    }
+
+    private int weigh(final Result<T> result) {
+        return result != null && result.result != null ? mSpec.weigher.weigh(result.result) : 0;
+    }
+
+    private int priority() {
+        return mStarted && mVisible ? mSpec.priority : mSpec.priority - HIDDEN_PENALTY;
+    }
+
+    private void updatePriority() {
+        if (mTask != null) {
+            mTask.setPriority(priority());
+        }
+    }
+
+    @Override
+    public void onInvalidated() {
+        // Only the first invalidation of a burst schedules a reload
+        if (mInvalidated.compareAndSet(false, true)) {
+            mSpec.host.postDelayed(mContentChanged, InvalidationBus.COALESCE_MILLIS);
+        }
+    }
+
+    @Override
+    public void onLoadTaskUpdate(final LoadTask<T> task, final Result<T> result) {
+        if (task == mTask && mTarget.isActive()) {
+            mTarget.deliverResult(result);
+        }
+    }
+
+    @Override
+    public void onLoadTaskFinished(final LoadTask<T> task, final Result<T> result) {
+        if (task != mTask) {
+            // Cancelled or superseded by a newer load
+            return;
+        }
+        mTask = null;
+        if (result.isSuccess) {
+            mValidator = task.revalidation().newValidator();
+            if (task.revalidation().isNotModified() && result == mRetained) {
+                // Not modified, and already delivered
+                return;
+            }
+            mPrevious = result;
+        }
+        if (mTarget.isActive()) {
+            mTarget.deliverResult(result);
+        }
+        if (!mStarted && mSpec.retention == ResultRetention.DROP_WHEN_STOPPED) {
+            release();
+        }
+    }
+}
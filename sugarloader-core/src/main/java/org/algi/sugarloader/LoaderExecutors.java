@@ -0,0 +1,45 @@
+package org.algi.sugarloader;
+
+/**
+ * Shared thread pools for loaders. Pick the one that matches what your background operation does,
+ * so slow network calls do not starve parsing or computation (and the other way round) :
+ * <pre>{@code
+ *      new SugarLoader<Profile>("Load profile")
+ *          .executor(LoaderExecutors.cpu())
+ *          .background(() -> parser.parse(file))
+ *          ...
+ * }
+ * </pre>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class LoaderExecutors {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private LoaderExecutors() {
+    }
+
+    /**
+     * @return the pool for blocking operations (network, disk, database). This is the default
+     * executor of every {@link SugarLoader}.
+     */
+    public static MonitoredExecutor io() {
+        return IoHolder.IO;
+    }
+
+    /**
+     * @return the pool for computations (parsing, sorting, decoding), sized to the number of cores
+     */
+    public static MonitoredExecutor cpu() {
+        return CpuHolder.CPU;
+    }
+
+    private static class IoHolder {
+        static final MonitoredExecutor IO = new MonitoredExecutor("SugarLoader io", Math.max(8, CPU_COUNT * 2));
+    }
+
+    private static class CpuHolder {
+        static final MonitoredExecutor CPU = new MonitoredExecutor("SugarLoader cpu", Math.max(1, CPU_COUNT));
+    }
+}
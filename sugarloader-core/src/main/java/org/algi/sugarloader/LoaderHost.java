@@ -0,0 +1,32 @@
+package org.algi.sugarloader;
+
+/**
+ * The thread loaders live on : results are delivered there, and loaders must be started,
+ * restarted and destroyed from there. On Android, it is the main thread ; elsewhere, see
+ * {@link EventLoopHost}.
+ *
+ * @author Alexandre Gianquinto
+ */
+public interface LoaderHost {
+
+    /**
+     * Run the given runnable on the host thread, after the runnables already posted.
+     */
+    void post(Runnable runnable);
+
+    /**
+     * Run the given runnable on the host thread, once {@code delayMillis} have elapsed.
+     */
+    void postDelayed(Runnable runnable, long delayMillis);
+
+    /**
+     * Run the given runnable on the host thread, along with the others posted for the next frame,
+     * before the UI is laid out. Hosts without frames run it like {@link #post(Runnable)}.
+     */
+    void postOnFrame(Runnable runnable);
+
+    /**
+     * Remove the pending {@link #postDelayed delayed} runs of the given runnable, if any.
+     */
+    void cancel(Runnable runnable);
+}
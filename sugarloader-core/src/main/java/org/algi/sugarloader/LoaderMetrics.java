@@ -0,0 +1,51 @@
+package org.algi.sugarloader;
+
+/**
+ * Global registration point of the {@link LoaderMetricsListener}. e.g. in
+ * {@code Application.onCreate()} :
+ * <pre>{@code
+ *      mRecorder = new LoaderMetricsRecorder();
+ *      LoaderMetrics.setListener(mRecorder);
+ *      ...
+ *      telemetry.send(mRecorder.snapshot());
+ * }
+ * </pre>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class LoaderMetrics {
+
+    private static final LoaderMetricsListener NONE = new LoaderMetricsListener() {
+        @Override
+        public void onLoaderCreated(final String loader) {
+        }
+
+        @Override
+        public void onLoaderAttached(final String loader) {
+        }
+
+        @Override
+        public void onBackgroundFinished(final String loader, final long queueNanos, final long executionNanos, final boolean success) {
+        }
+
+        @Override
+        public void onDelivered(final String loader, final long deliveryNanos) {
+        }
+    };
+
+    private static volatile LoaderMetricsListener sListener = NONE;
+
+    private LoaderMetrics() {
+    }
+
+    /**
+     * @param listener the listener of every loader of the application, or null to stop listening
+     */
+    public static void setListener(final LoaderMetricsListener listener) {
+        sListener = listener != null ? listener : NONE;
+    }
+
+    static LoaderMetricsListener listener() {
+        return sListener;
+    }
+}
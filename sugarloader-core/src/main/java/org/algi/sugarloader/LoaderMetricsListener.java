@@ -0,0 +1,39 @@
+package org.algi.sugarloader;
+
+/**
+ * Receives timings and events of every loader of the application, once registered with
+ * {@link LoaderMetrics#setListener(LoaderMetricsListener)}. Loaders are identified by their name
+ * (or id). Methods are called from background threads as well as from the host (main) thread, so they
+ * must be thread-safe and fast.
+ *
+ * @author Alexandre Gianquinto
+ * @see LoaderMetricsRecorder
+ */
+public interface LoaderMetricsListener {
+
+    /**
+     * A loader was created, so its background operation will run.
+     */
+    void onLoaderCreated(String loader);
+
+    /**
+     * {@code init} found a loader that was already created (e.g. after a configuration change).
+     */
+    void onLoaderAttached(String loader);
+
+    /**
+     * A background operation is over. Not told if it was cancelled, or superseded by a newer load.
+     *
+     * @param queueNanos     how long it waited for a thread
+     * @param executionNanos how long it ran
+     * @param success        false if it failed
+     */
+    void onBackgroundFinished(String loader, long queueNanos, long executionNanos, boolean success);
+
+    /**
+     * A result was delivered on UI thread.
+     *
+     * @param deliveryNanos how long {@code beforeDeliver} and the success or error handler took
+     */
+    void onDelivered(String loader, long deliveryNanos);
+}
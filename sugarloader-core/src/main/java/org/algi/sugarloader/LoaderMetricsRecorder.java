@@ -0,0 +1,117 @@
+package org.algi.sugarloader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Built-in {@link LoaderMetricsListener} that keeps, for each loader name, histograms of queue
+ * wait, background execution and UI delivery times, along with created / attached / error counts.
+ *
+ * @author Alexandre Gianquinto
+ */
+public class LoaderMetricsRecorder implements LoaderMetricsListener {
+
+    private final ConcurrentMap<String, Stats> mStats = new ConcurrentHashMap<>();
+
+    @Override
+    public void onLoaderCreated(final String loader) {
+        stats(loader).created.incrementAndGet();
+    }
+
+    @Override
+    public void onLoaderAttached(final String loader) {
+        stats(loader).attached.incrementAndGet();
+    }
+
+    @Override
+    public void onBackgroundFinished(final String loader, final long queueNanos, final long executionNanos, final boolean success) {
+        final Stats stats = stats(loader);
+        stats.queue.record(queueNanos);
+        stats.execution.record(executionNanos);
+        if (!success) {
+            stats.errors.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void onDelivered(final String loader, final long deliveryNanos) {
+        stats(loader).delivery.record(deliveryNanos);
+    }
+
+    /**
+     * @return the current statistics of each loader, by name
+     */
+    public Map<String, LoaderSnapshot> snapshot() {
+        final Map<String, LoaderSnapshot> snapshot = new HashMap<>();
+        for (final Map.Entry<String, Stats> entry : mStats.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return snapshot;
+    }
+
+    public void clear() {
+        mStats.clear();
+    }
+
+    private Stats stats(final String loader) {
+        Stats stats = mStats.get(loader);
+        if (stats == null) {
+            final Stats created = new Stats();
+            stats = mStats.putIfAbsent(loader, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        return stats;
+    }
+
+    private static class Stats {
+        final Histogram queue = new Histogram();
+        final Histogram execution = new Histogram();
+        final Histogram delivery = new Histogram();
+        final AtomicLong created = new AtomicLong();
+        final AtomicLong attached = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+
+        LoaderSnapshot snapshot() {
+            return new LoaderSnapshot(queue.snapshot(), execution.snapshot(), delivery.snapshot(),
+                    created.get(), attached.get(), errors.get());
+        }
+    }
+
+    public static final class LoaderSnapshot {
+        public final Histogram.Snapshot queue;
+        public final Histogram.Snapshot execution;
+        public final Histogram.Snapshot delivery;
+        public final long created;
+        public final long attached;
+        public final long errors;
+
+        LoaderSnapshot(final Histogram.Snapshot queue, final Histogram.Snapshot execution, final Histogram.Snapshot delivery,
+                       final long created, final long attached, final long errors) {
+            this.queue = queue;
+            this.execution = execution;
+            this.delivery = delivery;
+            this.created = created;
+            this.attached = attached;
+            this.errors = errors;
+        }
+
+        /**
+         * @return the share of {@code init} calls that reused an existing loader, between 0 and 1
+         */
+        public double getAttachRatio() {
+            final long total = created + attached;
+            return total == 0 ? 0 : (double) attached / total;
+        }
+
+        @Override
+        public String toString() {
+            return "created=" + created + ", attached=" + attached + ", errors=" + errors
+                    + "\n  queue: " + queue + "\n  execution: " + execution + "\n  delivery: " + delivery;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Weigher;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide cache of loader results, shared by all loaders using
+ * {@link SugarLoader#cache(long, TimeUnit)}. It outlives screens, so coming back to a screen may
+ * display data immediately instead of loading it again.
+ * <p>
+ * Entries expire after the time-to-live given by their loader, and the least recently used entries
+ * are evicted when the total weight exceeds {@link #setMaxWeight(int) max weight}. Each entry
+ * weighs 1 unless its loader provides a {@link Weigher} : all weighers should then use the same
+ * unit (e.g. kilobytes, or number of items).
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class MemoryCache {
+
+    private static final int DEFAULT_MAX_WEIGHT = 1024;
+
+    private static final MemoryCache SHARED = new MemoryCache(DEFAULT_MAX_WEIGHT);
+
+    private static final Weigher<Object> UNIT_WEIGHER = new Weigher<Object>() {
+        @Override
+        public int weigh(final Object o) {
+            return 1;
+        }
+    };
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int mMaxWeight;
+
+    private int mWeight;
+
+    private MemoryCache(final int maxWeight) {
+        mMaxWeight = maxWeight;
+    }
+
+    public static MemoryCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Change the maximum total weight of the cache, evicting entries if needed. Default is 1024.
+     */
+    public synchronized void setMaxWeight(final int maxWeight) {
+        mMaxWeight = maxWeight;
+        trimToWeight(maxWeight);
+    }
+
+    /**
+     * @return the total weight of the entries currently held
+     */
+    public synchronized int weight() {
+        return mWeight;
+    }
+
+    public synchronized void remove(final String key) {
+        final Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mWeight -= entry.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mWeight = 0;
+    }
+
+    /**
+     * Release memory : evict the least recently used half of the cache, or all of it if memory is
+     * critically low.
+     */
+    synchronized void trim(final boolean critical) {
+        trimToWeight(critical ? 0 : mWeight / 2);
+    }
+
+    /**
+     * @return the cached result for this key, or null if there is none or if it has expired
+     */
+    synchronized <T> Result<T> get(final String key) {
+        return get(key, false);
+    }
+
+    /**
+     * @param allowExpired true to return the result even if it has expired (it is then kept until
+     *                     evicted or replaced)
+     * @return the cached result for this key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    synchronized <T> Result<T> get(final String key, final boolean allowExpired) {
+        final Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!allowExpired && entry.expiresAt <= now()) {
+            remove(key);
+            return null;
+        }
+        return (Result<T>) entry.result;
+    }
+
+    synchronized <T> void put(final String key, final Result<T> result, final int weight, final long ttlMillis) {
+        remove(key);
+        if (weight > mMaxWeight) {
+            return;
+        }
+        mEntries.put(key, new Entry(result, weight, now() + ttlMillis));
+        mWeight += weight;
+        trimToWeight(mMaxWeight);
+    }
+
+    /**
+     * @return a weigher that gives the same weight (1) to every entry
+     */
+    @SuppressWarnings("unchecked")
+    static <T> Weigher<T> unitWeigher() {
+        return (Weigher<T>) UNIT_WEIGHER;
+    }
+
+    /**
+     * @return a job that stores every value returned by {@code job} in this cache
+     */
+    <T> Job<T> caching(final String key, final long ttlMillis, final Weigher<T> weigher, final Job<T> job) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final T value = job.run(context);
+                put(key, Result.success(value), weigher.weigh(value), ttlMillis);
+                return value;
+            }
+        };
+    }
+
+    private void trimToWeight(final int maxWeight) {
+        final Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mWeight > maxWeight && iterator.hasNext()) {
+            mWeight -= iterator.next().getValue().weight;
+            iterator.remove();
+        }
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static class Entry {
+        final Result<?> result;
+        final int weight;
+        final long expiresAt;
+
+        Entry(final Result<?> result, final int weight, final long expiresAt) {
+            this.result = result;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sheds what the library holds in memory when the system runs low on it : the
+ * {@link MemoryCache}, completed prefetches, and the results retained by stopped loaders whose
+ * {@link ResultRetention} allows it. Android loaders call {@link #trim(boolean)} on their own,
+ * from {@code ComponentCallbacks2.onTrimMemory} ; other hosts may call it when they see fit.
+ * <p>
+ * When memory is not critically low, only half of the weight is released, heaviest first : see
+ * {@code LoaderDefinition.retention(ResultRetention, Weigher)}.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class MemoryPressure {
+
+    /** Loaders whose result may be released */
+    private static final Set<LoaderEngine<?>> ENGINES = new LinkedHashSet<>();
+
+    private static final Comparator<Candidate> HEAVIEST_FIRST = new Comparator<Candidate>() {
+        @Override
+        public int compare(final Candidate a, final Candidate b) {
+            return a.weight < b.weight ? 1 : (a.weight == b.weight ? 0 : -1);
+        }
+    };
+
+    private MemoryPressure() {
+    }
+
+    /**
+     * Release memory. May be called from any thread : loaders release their result on their own
+     * thread, shortly after.
+     *
+     * @param critical true to release everything that can be, false to release about half of it
+     */
+    public static void trim(final boolean critical) {
+        MemoryCache.shared().trim(critical);
+        if (critical) {
+            Prefetches.trim();
+        }
+        final List<Candidate> candidates = new ArrayList<>();
+        long total = 0;
+        synchronized (ENGINES) {
+            for (LoaderEngine<?> engine : ENGINES) {
+                if (engine.isReleasable()) {
+                    // Weights are read once : they may change meanwhile on the loader threads
+                    final Candidate candidate = new Candidate(engine, engine.retainedWeight());
+                    candidates.add(candidate);
+                    total += candidate.weight;
+                }
+            }
+        }
+        if (!critical) {
+            Collections.sort(candidates, HEAVIEST_FIRST);
+        }
+        long released = 0;
+        for (Candidate candidate : candidates) {
+            if (!critical && released * 2 >= total) {
+                break;
+            }
+            released += candidate.weight;
+            candidate.engine.releaseLater();
+        }
+    }
+
+    static void register(final LoaderEngine<?> engine) {
+        synchronized (ENGINES) {
+            ENGINES.add(engine);
+        }
+    }
+
+    static void unregister(final LoaderEngine<?> engine) {
+        synchronized (ENGINES) {
+            ENGINES.remove(engine);
+        }
+    }
+
+    private static class Candidate {
+        final LoaderEngine<?> engine;
+        final int weight;
+
+        Candidate(final LoaderEngine<?> engine, final int weight) {
+            this.engine = engine;
+            this.weight = weight;
+        }
+    }
+}
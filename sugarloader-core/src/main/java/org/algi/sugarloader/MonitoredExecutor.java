@@ -0,0 +1,205 @@
+package org.algi.sugarloader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool used to run loaders in background, with a few counters to see how busy it is.
+ * <p>
+ * The pool is bounded by its thread count but elastic : threads are created on demand up to
+ * the limit, and die after being idle for a while, so an unused pool costs nothing.
+ * Tasks submitted while every thread is busy are queued (and counted as saturated). Queued tasks
+ * run by priority (see {@link LoaderDefinition#priority(int)}), then in the order they were submitted.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+public class MonitoredExecutor extends ThreadPoolExecutor {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final AtomicInteger mActive = new AtomicInteger();
+    private final AtomicLong mSubmitted = new AtomicLong();
+    private final AtomicLong mSaturated = new AtomicLong();
+    private final AtomicInteger mPeakQueueDepth = new AtomicInteger();
+    private final AtomicLong mSequence = new AtomicLong();
+
+    /**
+     * Queue entry of each task waiting for a thread, so it is found without scanning the queue :
+     * removed once the task runs, is removed, or is rejected
+     */
+    private final ConcurrentMap<Runnable, Queued> mQueued = new ConcurrentHashMap<>();
+
+    MonitoredExecutor(final String name, final int maxThreads) {
+        super(maxThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new NamedThreadFactory(name));
+        allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        mSubmitted.incrementAndGet();
+        if (mActive.get() >= getMaximumPoolSize()) {
+            mSaturated.incrementAndGet();
+        }
+        final Queued queued = new Queued(command, mSequence.incrementAndGet());
+        mQueued.put(command, queued);
+        try {
+            super.execute(queued);
+        } catch (RejectedExecutionException e) {
+            mQueued.remove(command, queued);
+            throw e;
+        }
+
+        final int depth = getQueue().size();
+        int peak;
+        while (depth > (peak = mPeakQueueDepth.get())) {
+            if (mPeakQueueDepth.compareAndSet(peak, depth)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    protected void beforeExecute(final Thread t, final Runnable r) {
+        mActive.incrementAndGet();
+        super.beforeExecute(t, r);
+    }
+
+    @Override
+    protected void afterExecute(final Runnable r, final Throwable t) {
+        super.afterExecute(r, t);
+        mActive.decrementAndGet();
+    }
+
+    /**
+     * Remove the given task from the queue, if it is still waiting for a thread. The task may be
+     * the one given to {@link #execute(Runnable)}, or the entry wrapping it in the queue (e.g. as
+     * given to a {@link java.util.concurrent.RejectedExecutionHandler}).
+     */
+    @Override
+    public boolean remove(final Runnable task) {
+        final Queued queued = task instanceof Queued ? (Queued) task : mQueued.get(task);
+        if (queued == null) {
+            return false;
+        }
+        mQueued.remove(queued.mTask, queued);
+        return super.remove(queued);
+    }
+
+    /**
+     * Move the given task in the queue according to its new {@link Prioritized#priority()}, if it
+     * is still waiting for a thread.
+     */
+    void reprioritize(final Runnable task) {
+        final Queued queued = mQueued.get(task);
+        if (queued != null) {
+            synchronized (queued) {
+                // The priority of a queued task must not change, or the queue would be corrupted
+                if (getQueue().remove(queued)) {
+                    queued.mPriority = priorityOf(task);
+                    getQueue().offer(queued);
+                }
+            }
+        }
+    }
+
+    private static int priorityOf(final Runnable task) {
+        return task instanceof Prioritized ? ((Prioritized) task).priority() : 0;
+    }
+
+    /**
+     * @return the number of tasks currently running
+     */
+    public int getRunningCount() {
+        return mActive.get();
+    }
+
+    /**
+     * @return the number of tasks waiting for a thread
+     */
+    public int getQueueDepth() {
+        return getQueue().size();
+    }
+
+    /**
+     * @return the highest queue depth observed since creation or last {@link #resetCounters()}
+     */
+    public int getPeakQueueDepth() {
+        return mPeakQueueDepth.get();
+    }
+
+    /**
+     * @return the number of tasks submitted since creation or last {@link #resetCounters()}
+     */
+    public long getSubmittedCount() {
+        return mSubmitted.get();
+    }
+
+    /**
+     * @return the number of tasks that were submitted while all threads were busy, and had to wait
+     */
+    public long getSaturatedCount() {
+        return mSaturated.get();
+    }
+
+    public void resetCounters() {
+        mSubmitted.set(0);
+        mSaturated.set(0);
+        mPeakQueueDepth.set(0);
+    }
+
+    /**
+     * A submitted task, ordered in the queue by priority, then by submission.
+     */
+    private class Queued implements Runnable, Comparable<Queued> {
+        final Runnable mTask;
+        final long mSequence;
+        volatile int mPriority;
+
+        Queued(final Runnable task, final long sequence) {
+            mTask = task;
+            mSequence = sequence;
+            mPriority = priorityOf(task);
+        }
+
+        @Override
+        public void run() {
+            mQueued.remove(mTask, this);
+            mTask.run();
+        }
+
+        @Override
+        public int compareTo(final Queued other) {
+            if (mPriority != other.mPriority) {
+                return mPriority > other.mPriority ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(final String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, mName + " #" + mCount.incrementAndGet());
+            // NORM_PRIORITY - 1 is mapped to Android's THREAD_PRIORITY_BACKGROUND, like AsyncTask threads
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
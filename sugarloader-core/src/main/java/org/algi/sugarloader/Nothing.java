@@ -2,9 +2,10 @@ package org.algi.sugarloader;
 
 import org.algi.sugarloader.function.Call;
 import org.algi.sugarloader.function.Consumer;
+import org.algi.sugarloader.function.StaleConsumer;
 import org.algi.sugarloader.function.Supplier;
 
-class Nothing<T> implements Call, Consumer<T>, Supplier<T> {
+class Nothing<T> implements Call, Consumer<T>, StaleConsumer<T>, Supplier<T> {
     @Override
     public void apply() {
     }
@@ -18,6 +19,10 @@ class Nothing<T> implements Call, Consumer<T>, Supplier<T> {
     public void accept(final T o) {
     }
 
+    @Override
+    public void accept(final T o, final boolean isStale) {
+    }
+
     private static final Nothing DO_NOTHING = new Nothing();
 
     @SuppressWarnings("unchecked")
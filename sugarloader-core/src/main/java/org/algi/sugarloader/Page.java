@@ -0,0 +1,49 @@
+package org.algi.sugarloader;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of items, as returned by a {@link PageSupplier}, with the key of the next page.
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class Page<K, T> {
+
+    private final List<T> mItems;
+    private final K mNextKey;
+    private final boolean mHasNext;
+
+    private Page(final List<T> items, final K nextKey, final boolean hasNext) {
+        mItems = Collections.unmodifiableList(items);
+        mNextKey = nextKey;
+        mHasNext = hasNext;
+    }
+
+    /**
+     * @param items   the items of the page
+     * @param nextKey the key of the next page
+     */
+    public static <K, T> Page<K, T> of(final List<T> items, final K nextKey) {
+        return new Page<>(items, nextKey, true);
+    }
+
+    /**
+     * @param items the items of the last page
+     */
+    public static <K, T> Page<K, T> last(final List<T> items) {
+        return new Page<>(items, null, false);
+    }
+
+    public List<T> getItems() {
+        return mItems;
+    }
+
+    public K getNextKey() {
+        return mNextKey;
+    }
+
+    public boolean hasNext() {
+        return mHasNext;
+    }
+}
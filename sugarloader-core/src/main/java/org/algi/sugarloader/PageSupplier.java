@@ -0,0 +1,15 @@
+package org.algi.sugarloader;
+
+/**
+ * Loads one page of a list, on background thread. e.g. {@code key -> mService.fetchPets(key)}
+ *
+ * @author Alexandre Gianquinto
+ * @see Pager
+ */
+public interface PageSupplier<K, T> {
+    /**
+     * @param key the key of the page, as given to {@link Pager#source} for the first page, then
+     *            as returned by the previous page
+     */
+    Page<K, T> get(K key) throws Exception;
+}
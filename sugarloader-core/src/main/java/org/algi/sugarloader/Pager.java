@@ -0,0 +1,371 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * A list loaded page by page, to be the result of a loader :
+ * <pre>{@code
+ *      new SugarLoader<Pager<String, Pet>>("Load pets")
+ *          .background(Pager.source(null, key -> mService.fetchPets(key)).window(2))
+ *          .onSuccess(pager -> mAdapter.setPager(pager))
+ *          .init(this);
+ *      ...
+ *      // in the adapter, on UI thread
+ *      public void onBindViewHolder(PetViewHolder holder, int position) {
+ *          mPager.loadAround(position);
+ *          holder.bind(mPager.getItem(position)); // null while its page is loading
+ *      }
+ * }
+ * </pre>
+ * The loader runs the first page ; the next pages are loaded on demand by {@link #loadAround(int)},
+ * on the executor of the loader, a little before they are displayed. Only the pages around the
+ * displayed one are kept in memory : the others are dropped, and loaded again when they come back
+ * into view. As the result of its loader, the pager survives configuration changes ; its pending
+ * page loads are cancelled once the loader is destroyed, or delivers another result.
+ * <p>
+ * Not thread-safe : every method must be called on UI thread.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class Pager<K, T> {
+
+    /**
+     * Told on UI thread when pages were loaded, or failed to.
+     */
+    public interface Listener {
+        void onPagesChanged(Pager<?, ?> pager);
+    }
+
+    private static final int DEFAULT_WINDOW = 3;
+
+    private static final int DEFAULT_PREFETCH_DISTANCE = 1;
+
+    private final PageSupplier<K, T> mSupplier;
+    private final int mWindow;
+    private final int mPrefetchDistance;
+
+    /** Key of each known page */
+    private final List<K> mKeys = new ArrayList<>();
+    /** Items of each known page, null once dropped */
+    private final List<List<T>> mPages = new ArrayList<>();
+    /** Number of items of each known page, still known once dropped */
+    private final List<Integer> mSizes = new ArrayList<>();
+    /** Loads running, by index of their page */
+    private final Map<Integer, PageLoad> mLoading = new HashMap<>();
+    private int mItemCount;
+    private K mNextKey;
+    private boolean mHasNext;
+    private Throwable mError;
+    private int mLastPosition;
+
+    /**
+     * Page of the last position looked up, and the position of its first item : positions are
+     * mostly looked up in sequence, as the list scrolls
+     */
+    private int mCachedPage;
+    private int mCachedStart;
+
+    private LoaderHost mHost;
+    private Executor mExecutor;
+    private Listener mListener;
+    /** Number of loaders holding the pager as their result */
+    private int mHolders;
+
+    private Pager(final Source<K, T> source, final K firstKey, final Page<K, T> firstPage) {
+        mSupplier = source.mSupplier;
+        mWindow = source.mWindow;
+        mPrefetchDistance = source.mPrefetchDistance;
+        add(firstKey, firstPage);
+    }
+
+    /**
+     * @param firstKey     the key of the first page, may be null
+     * @param pageSupplier loads a page from its key, on background thread
+     * @return the background operation of a loader delivering a pager, loading its first page
+     */
+    public static <K, T> Source<K, T> source(final K firstKey, final PageSupplier<K, T> pageSupplier) {
+        return new Source<>(firstKey, pageSupplier);
+    }
+
+    /**
+     * @return the number of items of the pages loaded so far
+     */
+    public int getItemCount() {
+        return mItemCount;
+    }
+
+    /**
+     * @return the item at the given position, or null if its page was dropped and is loading again
+     * (see {@link #loadAround(int)})
+     */
+    public T getItem(final int position) {
+        if (position < 0 || position >= mItemCount) {
+            throw new IndexOutOfBoundsException("Position " + position + " of " + mItemCount + " items");
+        }
+        final List<T> items = mPages.get(pageOf(position));
+        return items == null ? null : items.get(position - mCachedStart);
+    }
+
+    /**
+     * Tell the pager which position is displayed : it loads the next page when getting close to
+     * the end, loads the page of this position again if it was dropped, and drops the pages that
+     * are out of its window.
+     */
+    public void loadAround(final int position) {
+        mLastPosition = position;
+        if (mHost == null || mItemCount == 0) {
+            return;
+        }
+        final int current = pageOf(position);
+        for (int page = 0; page < mPages.size(); page++) {
+            if (Math.abs(page - current) > mWindow) {
+                mPages.set(page, null);
+            } else if (mPages.get(page) == null) {
+                load(page);
+            }
+        }
+        if (mHasNext && current >= mPages.size() - 1 - mPrefetchDistance) {
+            load(mPages.size());
+        }
+    }
+
+    /**
+     * @return true if there are more pages to load
+     */
+    public boolean hasNext() {
+        return mHasNext;
+    }
+
+    /**
+     * @return true while a page is loading
+     */
+    public boolean isLoading() {
+        return !mLoading.isEmpty();
+    }
+
+    /**
+     * @return the error of the last page load, if it failed
+     */
+    public Throwable getError() {
+        return mError;
+    }
+
+    /**
+     * Load again the pages that failed, around the last displayed position.
+     */
+    public void retry() {
+        mError = null;
+        loadAround(mLastPosition);
+    }
+
+    /**
+     * @param listener told when pages change, or null. It should be set again with the new UI after
+     *                 a configuration change, as the pager outlives it.
+     */
+    public void setListener(final Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Called when the pager is delivered by its loader, so next pages are loaded the same way.
+     */
+    void attach(final LoaderHost host, final Executor executor) {
+        mHost = host;
+        mExecutor = executor;
+    }
+
+    /**
+     * Called when a loader keeps the pager as its result.
+     */
+    void hold() {
+        mHolders++;
+    }
+
+    /**
+     * Called when a loader holding the pager is destroyed, or delivers another result : once no
+     * loader holds it, cancel the pages being loaded. The pager loads pages again only if it is
+     * attached again.
+     */
+    void release() {
+        if (--mHolders > 0) {
+            return;
+        }
+        mHolders = 0;
+        for (final PageLoad load : mLoading.values()) {
+            if (load.cancel(false) && mExecutor instanceof ThreadPoolExecutor) {
+                ((ThreadPoolExecutor) mExecutor).remove(load);
+            }
+        }
+        mLoading.clear();
+        mHost = null;
+        mExecutor = null;
+    }
+
+    /**
+     * @return the page holding the given position, whose first item is then at {@link #mCachedStart}
+     */
+    private int pageOf(final int position) {
+        int page = mCachedPage;
+        int start = mCachedStart;
+        while (position < start && page > 0) {
+            page--;
+            start -= mSizes.get(page);
+        }
+        while (position >= start + mSizes.get(page) && page < mSizes.size() - 1) {
+            start += mSizes.get(page);
+            page++;
+        }
+        mCachedPage = page;
+        mCachedStart = start;
+        return page;
+    }
+
+    private boolean isInWindow(final int page) {
+        return Math.abs(page - pageOf(mLastPosition)) <= mWindow;
+    }
+
+    private void load(final int page) {
+        if (mError != null || mLoading.containsKey(page)) {
+            return;
+        }
+        final K key = page < mKeys.size() ? mKeys.get(page) : mNextKey;
+        final PageLoad load = new PageLoad(page, key, mHost);
+        mLoading.put(page, load);
+        mExecutor.execute(load);
+    }
+
+    private void onLoaded(final PageLoad load) {
+        if (mLoading.get(load.mPage) != load) {
+            // Cancelled when the pager was destroyed
+            return;
+        }
+        mLoading.remove(load.mPage);
+        final int page = load.mPage;
+        try {
+            final Page<K, T> loaded = load.get();
+            if (page == mPages.size()) {
+                add(load.mKey, loaded);
+                if (!isInWindow(page)) {
+                    // Scrolled back while it was loading : only its key and size are needed
+                    mPages.set(page, null);
+                }
+            } else if (isInWindow(page)) {
+                final List<T> items = loaded.getItems();
+                final int delta = items.size() - mSizes.get(page);
+                mItemCount += delta;
+                if (page < mCachedPage) {
+                    mCachedStart += delta;
+                }
+                mSizes.set(page, items.size());
+                mPages.set(page, items);
+            }
+            // else scrolled away while it was loading : it would be dropped at once
+        } catch (ExecutionException e) {
+            mError = e.getCause();
+        } catch (InterruptedException | CancellationException e) {
+            // Cannot happen : the load is done and was not cancelled
+        }
+        if (mListener != null) {
+            mListener.onPagesChanged(this);
+        }
+    }
+
+    private void add(final K key, final Page<K, T> page) {
+        final List<T> items = page.getItems();
+        mKeys.add(key);
+        mPages.add(items);
+        mSizes.add(items.size());
+        mItemCount += items.size();
+        mNextKey = page.getNextKey();
+        mHasNext = page.hasNext();
+    }
+
+    /**
+     * Load of a page, on the executor of the pager, delivered on its host thread.
+     */
+    private class PageLoad extends FutureTask<Page<K, T>> {
+        final int mPage;
+        final K mKey;
+        private final LoaderHost mHost;
+
+        PageLoad(final int page, final K key, final LoaderHost host) {
+            super(fetch(mSupplier, key));
+            mPage = page;
+            mKey = key;
+            mHost = host;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            mHost.post(new Runnable() {
+                @Override
+                public void run() {
+                    onLoaded(PageLoad.this);
+                }
+            });
+        }
+    }
+
+    private static <K, T> Callable<Page<K, T>> fetch(final PageSupplier<K, T> supplier, final K key) {
+        return new Callable<Page<K, T>>() {
+            @Override
+            public Page<K, T> call() throws Exception {
+                return supplier.get(key);
+            }
+        };
+    }
+
+    /**
+     * Loads the first page of a {@link Pager}, as background operation of its loader.
+     */
+    public static final class Source<K, T> implements Supplier<Pager<K, T>> {
+        private final K mFirstKey;
+        private final PageSupplier<K, T> mSupplier;
+        private int mWindow = DEFAULT_WINDOW;
+        private int mPrefetchDistance = DEFAULT_PREFETCH_DISTANCE;
+
+        private Source(final K firstKey, final PageSupplier<K, T> supplier) {
+            mFirstKey = firstKey;
+            mSupplier = supplier;
+        }
+
+        /**
+         * @param pages how many pages to keep in memory on each side of the displayed one
+         *              (default is 3)
+         * @return the source itself, to pipe with other commands
+         */
+        public Source<K, T> window(final int pages) {
+            mWindow = pages;
+            return this;
+        }
+
+        /**
+         * @param pages how many pages before the last one the next page starts loading (default is 1)
+         * @return the source itself, to pipe with other commands
+         */
+        public Source<K, T> prefetchDistance(final int pages) {
+            mPrefetchDistance = pages;
+            return this;
+        }
+
+        @Override
+        public Pager<K, T> get() throws Exception {
+            return new Pager<>(this, mFirstKey, mSupplier.get(mFirstKey));
+        }
+    }
+}
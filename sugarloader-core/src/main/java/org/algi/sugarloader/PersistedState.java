@@ -0,0 +1,210 @@
+package org.algi.sugarloader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The last result of a loader, serialized in background as soon as it is loaded, so that it can be
+ * saved at once with the state of its host and restored after the process was killed. Results
+ * bigger than {@link #maxBytes} are written to a side file instead, on the io pool, and only the
+ * path of the file is saved with the state.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class PersistedState<T> {
+
+    /** How long a side file that was never restored is kept */
+    private static final long MAX_FILE_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final ResultSerializer<T> mSerializer;
+
+    /** Biggest result saved with the state of the host, rather than to a side file */
+    final int maxBytes;
+
+    /** Where side files are written, null if results bigger than {@link #maxBytes} are not saved */
+    private final File mDirectory;
+
+    private volatile byte[] mBytes;
+
+    /** Side file to load the result from instead of running the job, once */
+    private volatile File mRestoreFile;
+
+    /** Side file holding the last result, once written, deleted when a newer result is loaded */
+    private File mSavedFile;
+
+    /** Incremented for each result : a side file written for an older one is deleted at once */
+    private int mGeneration;
+
+    /**
+     * @param restoredBytes the result this loader was restored with, if any
+     * @param restoreFile   the side file to restore the result from, if any
+     * @param directory     where to write side files, if any
+     */
+    PersistedState(final ResultSerializer<T> serializer, final int maxBytes, final byte[] restoredBytes, final File restoreFile,
+                   final File directory) {
+        mSerializer = serializer;
+        this.maxBytes = maxBytes;
+        mBytes = restoredBytes;
+        mRestoreFile = restoreFile;
+        mDirectory = directory;
+    }
+
+    /**
+     * @return the serialized result, or null if there is none yet, it could not be serialized or it
+     * is bigger than {@link #maxBytes}
+     */
+    byte[] bytes() {
+        return mBytes;
+    }
+
+    /**
+     * @return the side file holding the result, or null if the result is small enough to be saved
+     * with the state, or its side file is not written yet
+     */
+    synchronized File savedFile() {
+        return mSavedFile;
+    }
+
+    /**
+     * @return a job that reads the result from the side file, if any, instead of running
+     * {@code job} ; and serializes every value of {@code job}
+     */
+    Job<T> persisting(final Job<T> job) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final File file = mRestoreFile;
+                if (file != null) {
+                    mRestoreFile = null;
+                    try {
+                        final byte[] bytes = read(file);
+                        final T value = mSerializer.deserialize(bytes);
+                        keep(bytes);
+                        return value;
+                    } catch (IOException e) {
+                        // Lost or corrupted : load it again
+                    } finally {
+                        file.delete();
+                    }
+                }
+                final T value = job.run(context);
+                byte[] bytes;
+                try {
+                    bytes = mSerializer.serialize(value);
+                } catch (IOException e) {
+                    // The load succeeded : failing to persist it must not turn it into an error
+                    bytes = null;
+                }
+                keep(bytes);
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Make the given serialized result the one saved with the state : as is if it is small enough,
+     * else through a new side file, written on the io pool so that saving the state does not have
+     * to. Until it is written, no result is saved, and the loader loads again if restored.
+     */
+    private void keep(final byte[] bytes) {
+        final boolean small = bytes == null || bytes.length <= maxBytes;
+        mBytes = small ? bytes : null;
+        final File previous;
+        final int generation;
+        synchronized (this) {
+            previous = mSavedFile;
+            mSavedFile = null;
+            generation = ++mGeneration;
+        }
+        if ((small && previous == null) || mDirectory == null) {
+            return;
+        }
+        LoaderExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (previous != null) {
+                    previous.delete();
+                }
+                if (!small) {
+                    write(bytes, generation);
+                }
+                deleteOldFiles(mDirectory);
+            }
+        });
+    }
+
+    /**
+     * Write a side file for the result of the given generation, and keep it unless a newer result
+     * was loaded in the meantime.
+     */
+    private void write(final byte[] bytes, final int generation) {
+        final File file = new File(mDirectory, System.currentTimeMillis() + "-" + SEQUENCE.incrementAndGet());
+        try {
+            write(file, bytes);
+        } catch (IOException e) {
+            // Not restored then : the loader will load again
+            file.delete();
+            return;
+        }
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mSavedFile = file;
+                return;
+            }
+        }
+        file.delete();
+    }
+
+    private static byte[] read(final File file) throws IOException {
+        final InputStream input = new FileInputStream(file);
+        try {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream((int) file.length());
+            final byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void write(final File file, final byte[] bytes) throws IOException {
+        final File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        final OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Delete the side files of states that were never restored, e.g. when the task was dismissed.
+     */
+    private static void deleteOldFiles(final File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        for (File file : files) {
+            if (now - file.lastModified() > MAX_FILE_AGE_MILLIS) {
+                file.delete();
+            }
+        }
+    }
+}
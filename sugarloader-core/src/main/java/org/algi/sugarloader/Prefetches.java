@@ -0,0 +1,144 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide table of background operations started ahead of the loader that needs them,
+ * typically from the screen that launches the one displaying the result. The first load of that
+ * loader claims the prefetch : it waits for it if it is still running, or takes its value at once.
+ * A prefetch is claimed only once, and unclaimed results are dropped {@link #MAX_AGE_MILLIS} after
+ * they completed, from the {@link Timeouts} watchdog thread.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class Prefetches {
+
+    /** How long a completed prefetch waits for its loader */
+    static final long MAX_AGE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final ConcurrentMap<String, Prefetch<?>> PENDING = new ConcurrentHashMap<>();
+
+    /** How often a waiting task checks whether it was cancelled */
+    private static final long CANCELLATION_POLL_MILLIS = 100;
+
+    /** Drops the expired prefetches : holds none of them, so it may wait for its time */
+    private static final Runnable EVICTION = new Runnable() {
+        @Override
+        public void run() {
+            evictExpired();
+        }
+    };
+
+    private Prefetches() {
+    }
+
+    /**
+     * Start running {@code supplier} on {@code executor} for the loader using {@code key}. A newer
+     * prefetch with the same key replaces the older one.
+     */
+    static void start(final String key, final Supplier<?> supplier, final Executor executor) {
+        final Prefetch<?> prefetch = new Prefetch<>(supplier);
+        PENDING.put(key, prefetch);
+        executor.execute(prefetch);
+    }
+
+    /**
+     * @return a job that returns the value prefetched under {@code key}, if any, and runs
+     * {@code job} otherwise, or if the prefetch failed
+     */
+    static <T> Job<T> claiming(final String key, final Job<T> job) {
+        return new Job<T>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            T run(final LoadContext<T> context) throws Exception {
+                final Prefetch<?> prefetch = PENDING.remove(key);
+                if (prefetch != null && !prefetch.isExpired()) {
+                    final Result<?> result = prefetch.await(context);
+                    if (result.isSuccess) {
+                        return (T) result.result;
+                    }
+                }
+                return job.run(context);
+            }
+        };
+    }
+
+    /**
+     * Drop every completed prefetch, under memory pressure : their loaders will run their
+     * background operation again.
+     */
+    static void trim() {
+        final Iterator<Prefetch<?>> iterator = PENDING.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void evictExpired() {
+        final Iterator<Prefetch<?>> iterator = PENDING.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Prefetch<T> implements Runnable {
+        private final Supplier<T> mSupplier;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile Result<T> mResult;
+        private volatile long mCompletedAt;
+
+        Prefetch(final Supplier<T> supplier) {
+            mSupplier = supplier;
+        }
+
+        @Override
+        public void run() {
+            Result<T> result;
+            try {
+                result = Result.success(mSupplier.get());
+            } catch (Throwable t) {
+                result = Result.error(t);
+            }
+            mResult = result;
+            mCompletedAt = now();
+            mDone.countDown();
+            Timeouts.schedule(EVICTION, MAX_AGE_MILLIS);
+        }
+
+        boolean isDone() {
+            return mDone.getCount() == 0;
+        }
+
+        /**
+         * @return true if the prefetch completed too long ago to be used. A running one never expires.
+         */
+        boolean isExpired() {
+            return isDone() && now() - mCompletedAt >= MAX_AGE_MILLIS;
+        }
+
+        /**
+         * Wait for the prefetch to complete, unless the waiting task is cancelled first.
+         */
+        Result<T> await(final CancellationToken token) throws InterruptedException {
+            while (!mDone.await(CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                token.throwIfCancelled();
+            }
+            return mResult;
+        }
+
+        private static long now() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package org.algi.sugarloader;
+
+/**
+ * A task that {@link MonitoredExecutor} runs before those of lower priority, when every thread
+ * is busy.
+ *
+ * @author Alexandre Gianquinto
+ */
+interface Prioritized {
+
+    /**
+     * @return the priority of the task : higher runs first. Tasks that are not prioritized have 0.
+     */
+    int priority();
+}
@@ -0,0 +1,86 @@
+package org.algi.sugarloader;
+
+/**
+ * Immutable outcome of a load. Common values (null, booleans) are shared instances, so that
+ * loaders returning them do not allocate : use the static factories.
+ *
+ * @author Alexandre Gianquinto
+ */
+class Result<TYPE> {
+
+    private static final Result<Object> NULL = new Result<>(null, false, false);
+    private static final Result<Object> NULL_STALE = new Result<>(null, true, false);
+    private static final Result<Object> NULL_PARTIAL = new Result<>(null, false, true);
+    private static final Result<Object> TRUE = new Result<Object>(Boolean.TRUE, false, false);
+    private static final Result<Object> FALSE = new Result<Object>(Boolean.FALSE, false, false);
+    private static final Result<Object> RELEASED = new Result<>(null, true, false);
+
+    final TYPE result;
+    final Throwable error;
+    final boolean isSuccess;
+    /** True for a previously known result, delivered while a fresher one is loading */
+    final boolean isStale;
+    /** True for a value emitted while the final result is being computed */
+    final boolean isPartial;
+
+    private Result(final TYPE result, final boolean isStale, final boolean isPartial) {
+        this.error = null;
+        this.result = result;
+        this.isSuccess = true;
+        this.isStale = isStale;
+        this.isPartial = isPartial;
+    }
+
+    private Result(final Throwable error) {
+        this.result = null;
+        this.error = error;
+        this.isSuccess = false;
+        this.isStale = false;
+        this.isPartial = false;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <TYPE> Result<TYPE> success(final TYPE value) {
+        if (value == null) {
+            return (Result<TYPE>) NULL;
+        }
+        if (value instanceof Boolean) {
+            return (Result<TYPE>) ((Boolean) value ? TRUE : FALSE);
+        }
+        return new Result<>(value, false, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <TYPE> Result<TYPE> stale(final TYPE value) {
+        return value == null ? (Result<TYPE>) NULL_STALE : new Result<>(value, true, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <TYPE> Result<TYPE> partial(final TYPE value) {
+        return value == null ? (Result<TYPE>) NULL_PARTIAL : new Result<>(value, false, true);
+    }
+
+    static <TYPE> Result<TYPE> error(final Throwable error) {
+        return new Result<>(error);
+    }
+
+    /**
+     * @return the result a loader delivers in place of its result, once released under memory
+     * pressure : it is never handled, and is only there so the loader framework forgets the result
+     */
+    @SuppressWarnings("unchecked")
+    static <TYPE> Result<TYPE> released() {
+        return (Result<TYPE>) RELEASED;
+    }
+
+    boolean isReleased() {
+        return this == RELEASED;
+    }
+
+    /**
+     * @return this result, marked as stale
+     */
+    Result<TYPE> asStale() {
+        return isStale || !isSuccess ? this : Result.stale(result);
+    }
+}
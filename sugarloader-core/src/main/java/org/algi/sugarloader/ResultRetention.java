@@ -0,0 +1,21 @@
+package org.algi.sugarloader;
+
+/**
+ * How long a loader keeps its last result, so that it is delivered again when the loader is
+ * started again, or when its host is recreated, without loading it again. A released result is
+ * loaded again the next time the loader is started.
+ *
+ * @author Alexandre Gianquinto
+ * @see MemoryPressure
+ */
+public enum ResultRetention {
+
+    /** Keep the result as long as the loader lives (default) */
+    KEEP,
+
+    /** Release the result as soon as the loader is stopped, e.g. when its activity is not displayed anymore */
+    DROP_WHEN_STOPPED,
+
+    /** Release the result when memory runs low while the loader is stopped, heaviest results first */
+    DROP_ON_TRIM
+}
@@ -0,0 +1,16 @@
+package org.algi.sugarloader;
+
+import java.io.IOException;
+
+/**
+ * Converts loader results to bytes and back, so they can be stored in a {@link DiskCache}, or
+ * saved across process death.
+ *
+ * @author Alexandre Gianquinto
+ */
+public interface ResultSerializer<T> {
+
+    byte[] serialize(T value) throws IOException;
+
+    T deserialize(byte[] bytes) throws IOException;
+}
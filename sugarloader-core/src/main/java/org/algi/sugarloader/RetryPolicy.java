@@ -0,0 +1,138 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Predicate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tells {@link SugarLoader#retry(RetryPolicy)} how to retry a failed background operation : how
+ * many times, how long to wait between attempts, and which errors are worth retrying.
+ * <p>
+ * The delay before attempt n (starting from the second) is {@code initialDelay * multiplier^(n-2)},
+ * capped to {@link #maxDelay(long, TimeUnit) max delay}, then randomized by
+ * {@link #jitter(double) jitter} so that many clients failing together don't retry together.
+ * </p>
+ * For example, 4 attempts with 500 ms, 1 s and 2 s (+/- 20 %) between them, on I/O errors and timeouts :
+ * <pre>{@code
+ *      RetryPolicy.exponential(4, 500, TimeUnit.MILLISECONDS)
+ * }
+ * </pre>
+ *
+ * @author Alexandre Gianquinto
+ */
+public class RetryPolicy {
+
+    /** How often a waiting operation checks whether it was cancelled */
+    private static final long CANCELLATION_POLL_MILLIS = 50;
+
+    private static final Predicate<Throwable> TRANSIENT_ERRORS = new Predicate<Throwable>() {
+        @Override
+        public boolean test(final Throwable t) {
+            return t instanceof IOException || t instanceof TimeoutException;
+        }
+    };
+
+    private final int mMaxAttempts;
+    private final long mInitialDelayMillis;
+    private long mMaxDelayMillis = TimeUnit.SECONDS.toMillis(30);
+    private double mMultiplier = 2;
+    private double mJitter = 0.2;
+    private Predicate<Throwable> mRetryable = TRANSIENT_ERRORS;
+
+    private RetryPolicy(final int maxAttempts, final long initialDelayMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is needed : " + maxAttempts);
+        }
+        mMaxAttempts = maxAttempts;
+        mInitialDelayMillis = initialDelayMillis;
+    }
+
+    /**
+     * @param maxAttempts  how many times the operation may run, including the first one
+     * @param initialDelay how long to wait before the second attempt. Next delays are doubled.
+     * @param unit         the unit of {@code initialDelay}
+     */
+    public static RetryPolicy exponential(final int maxAttempts, final long initialDelay, final TimeUnit unit) {
+        return new RetryPolicy(maxAttempts, unit.toMillis(initialDelay));
+    }
+
+    /**
+     * How much a delay grows from one attempt to the next. Default is 2.
+     */
+    public RetryPolicy multiplier(final double multiplier) {
+        mMultiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Upper bound of a delay, before jitter. Default is 30 seconds.
+     */
+    public RetryPolicy maxDelay(final long maxDelay, final TimeUnit unit) {
+        mMaxDelayMillis = unit.toMillis(maxDelay);
+        return this;
+    }
+
+    /**
+     * Randomization of delays : 0.2 (default) means each delay is picked between 80 % and 120 % of
+     * its nominal value. 0 disables randomization.
+     */
+    public RetryPolicy jitter(final double jitter) {
+        mJitter = jitter;
+        return this;
+    }
+
+    /**
+     * Which errors are worth retrying. Default is {@link IOException} and {@link TimeoutException}.
+     * A cancelled operation is never retried.
+     */
+    public RetryPolicy retryOn(final Predicate<Throwable> retryable) {
+        mRetryable = retryable;
+        return this;
+    }
+
+    /**
+     * @return the delay before the given attempt (2 for the first retry)
+     */
+    long delayMillis(final int attempt) {
+        final double nominal = Math.min(mMaxDelayMillis, mInitialDelayMillis * Math.pow(mMultiplier, attempt - 2));
+        return Math.max(0, Math.round(nominal * (1 + mJitter * (2 * Math.random() - 1))));
+    }
+
+    /**
+     * @return a job that runs {@code job} again on retryable errors, according to this policy
+     */
+    <T> Job<T> retrying(final Job<T> job) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        return job.run(context);
+                    } catch (Exception e) {
+                        if (attempt >= mMaxAttempts || context.isCancelled() || !mRetryable.test(e)) {
+                            throw e;
+                        }
+                    }
+                    sleep(delayMillis(attempt + 1), context);
+                    final Revalidation<T> revalidation = context.revalidation();
+                    if (revalidation != null) {
+                        revalidation.reset();
+                    }
+                }
+            }
+        };
+    }
+
+    private static void sleep(final long millis, final CancellationToken token) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        long remaining = millis;
+        while (remaining > 0) {
+            token.throwIfCancelled();
+            Thread.sleep(Math.min(remaining, CANCELLATION_POLL_MILLIS));
+            remaining = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+        }
+        token.throwIfCancelled();
+    }
+}
@@ -0,0 +1,117 @@
+package org.algi.sugarloader;
+
+/**
+ * What a {@link org.algi.sugarloader.function.RevalidatingSupplier} knows of the previous load, so
+ * it may only check whether its value changed, e.g. with HTTP conditional requests :
+ * <pre>{@code
+ *      .backgroundRevalidating(revalidation -> {
+ *          Response response = mService.fetchPets(revalidation.getValidator()); // If-None-Match
+ *          if (response.code() == 304) {
+ *              return revalidation.notModified();
+ *          }
+ *          revalidation.setValidator(response.header("ETag"));
+ *          return parse(response);
+ *      })
+ * }
+ * </pre>
+ * A value not modified is delivered as the very same result as before : it is not delivered again
+ * if it is already displayed. Only {@link #notModified()} tells so : a supplier returning the same
+ * instance as before (e.g. a list it changed in place) has it delivered again.
+ *
+ * @author Alexandre Gianquinto
+ */
+public final class Revalidation<T> {
+
+    private final Result<T> mPrevious;
+    private final String mValidator;
+    private volatile String mNewValidator;
+    /** Whether the supplier returned {@link #notModified()} : values are never compared */
+    private volatile boolean mNotModified;
+
+    /**
+     * @param previous  the last successful result of the loader, or null
+     * @param validator the validator given with it, or null
+     */
+    Revalidation(final Result<T> previous, final String validator) {
+        mPrevious = previous;
+        mValidator = previous != null ? validator : null;
+    }
+
+    /**
+     * @return true if a value was loaded before, which may be returned by {@link #notModified()}
+     */
+    public boolean hasPrevious() {
+        return mPrevious != null;
+    }
+
+    /**
+     * @return the value loaded before, or null if there is none
+     */
+    public T getPrevious() {
+        return mPrevious != null ? mPrevious.result : null;
+    }
+
+    /**
+     * @return the validator given with the previous value (see {@link #setValidator(String)}), or
+     * null if there is none
+     */
+    public String getValidator() {
+        return mValidator;
+    }
+
+    /**
+     * @param validator identifies the version of the value being returned (e.g. ETag, Last-Modified
+     *                  date, version number), to be given to the next load
+     */
+    public void setValidator(final String validator) {
+        mNewValidator = validator;
+    }
+
+    /**
+     * @return the previous value, to be returned by the supplier when it has not changed
+     * @throws IllegalStateException if there is no previous value
+     */
+    public T notModified() {
+        if (mPrevious == null) {
+            throw new IllegalStateException("No previous value to revalidate");
+        }
+        mNotModified = true;
+        return mPrevious.result;
+    }
+
+    /**
+     * Forget what the supplier told, before it runs again for another attempt : what a failed
+     * attempt told does not apply to the next one.
+     */
+    void reset() {
+        mNotModified = false;
+        mNewValidator = null;
+    }
+
+    /**
+     * @return true if the supplier returned {@link #notModified()}
+     */
+    boolean isNotModified() {
+        return mNotModified;
+    }
+
+    /**
+     * @return the result to deliver for the given value : the previous one if the supplier
+     * returned it as not modified and the previous result is fresh, a new one otherwise
+     */
+    Result<T> resultOf(final T value) {
+        if (mNotModified && !mPrevious.isStale) {
+            return mPrevious;
+        }
+        return Result.success(value);
+    }
+
+    /**
+     * @return the validator of the value loaded : the one set by the supplier, or the previous one
+     * if it was not modified
+     */
+    String newValidator() {
+        final String validator = mNewValidator;
+        return validator == null && mNotModified ? mValidator : validator;
+    }
+}
@@ -0,0 +1,94 @@
+package org.algi.sugarloader;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide table of running background operations, indexed by a shared key. A caller that
+ * finds an operation already running for its key waits for it instead of running its own job,
+ * and gets the very same value (or exception). Partial values are only emitted to the task that
+ * actually runs the job. If that task is cancelled, waiting tasks run the job again themselves.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class SharedLoads {
+
+    private static final ConcurrentMap<String, Flight<?>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /** How often a waiting task checks whether it was cancelled */
+    private static final long CANCELLATION_POLL_MILLIS = 100;
+
+    private SharedLoads() {
+    }
+
+    /**
+     * @return a job that runs {@code job} through the in-flight table under {@code key}
+     */
+    static <T> Job<T> share(final String key, final Job<T> job) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                return SharedLoads.run(key, job, context);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T run(final String key, final Job<T> job, final LoadContext<T> context) throws Exception {
+        while (true) {
+            final Flight<T> flight = new Flight<>();
+            final Flight<T> running = (Flight<T>) IN_FLIGHT.putIfAbsent(key, flight);
+            if (running == null) {
+                return flight.run(key, job, context);
+            }
+            running.await(context);
+            if (!running.mCancelled) {
+                return running.get();
+            }
+            // The task running the job was cancelled : its result (likely an error) is not ours
+        }
+    }
+
+    private static class Flight<T> {
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile Result<T> mResult;
+        private volatile boolean mCancelled;
+
+        T run(final String key, final Job<T> job, final LoadContext<T> context) throws Exception {
+            Result<T> result;
+            try {
+                result = Result.success(job.run(context));
+            } catch (Throwable t) {
+                result = Result.error(t);
+            } finally {
+                IN_FLIGHT.remove(key, this);
+            }
+            mResult = result;
+            mCancelled = context.isCancelled();
+            mDone.countDown();
+            return get();
+        }
+
+        /**
+         * Wait for the flight to land, unless the waiting task is cancelled first.
+         */
+        void await(final CancellationToken token) throws InterruptedException {
+            while (!mDone.await(CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                token.throwIfCancelled();
+            }
+        }
+
+        T get() throws Exception {
+            final Result<T> result = mResult;
+            if (result.isSuccess) {
+                return result.result;
+            }
+            if (result.error instanceof Exception) {
+                throw (Exception) result.error;
+            }
+            throw (Error) result.error;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.algi.sugarloader;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounds the time a job may run, from the background thread that runs it.
+ * <p>
+ * When the time is up, the job's cancellation token is cancelled and its thread is interrupted,
+ * which stops sleeps, waits and interruptible I/O. The job then fails with a
+ * {@link TimeoutException}, whatever it returned. Blocking calls that ignore interrupts (plain
+ * socket reads) cannot be stopped : give them their own timeout too.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+final class Timeouts {
+
+    private static final ScheduledThreadPoolExecutor WATCHDOG = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "SugarLoader watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private Timeouts() {
+    }
+
+    /**
+     * Run the given runnable on the watchdog thread, once {@code delayMillis} have elapsed. It must
+     * be short, not to delay the deadlines of running jobs.
+     */
+    static void schedule(final Runnable runnable, final long delayMillis) {
+        WATCHDOG.schedule(runnable, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return a job that runs {@code job} and fails with {@link TimeoutException} if it takes more
+     * than {@code timeoutMillis}
+     */
+    static <T> Job<T> limit(final Job<T> job, final long timeoutMillis) {
+        return new Job<T>() {
+            @Override
+            T run(final LoadContext<T> context) throws Exception {
+                final Deadline<T> deadline = new Deadline<>(context, Thread.currentThread());
+                final ScheduledFuture<?> alarm = WATCHDOG.schedule(deadline, timeoutMillis, TimeUnit.MILLISECONDS);
+                T value = null;
+                Exception failure = null;
+                try {
+                    value = job.run(deadline);
+                } catch (Exception e) {
+                    failure = e;
+                } finally {
+                    alarm.cancel(false);
+                    deadline.disarm();
+                }
+                if (deadline.mExpired) {
+                    throw new TimeoutException("Load did not complete within " + timeoutMillis + " ms");
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Context of a job run with a time limit : cancelled when the time is up.
+     */
+    private static class Deadline<T> implements LoadContext<T>, Runnable {
+        private final LoadContext<T> mParent;
+        private Thread mThread;
+        private volatile boolean mExpired;
+
+        Deadline(final LoadContext<T> parent, final Thread thread) {
+            mParent = parent;
+            mThread = thread;
+        }
+
+        @Override
+        public synchronized void run() {
+            if (mThread != null) {
+                mExpired = true;
+                mThread.interrupt();
+            }
+        }
+
+        /**
+         * Called from the job's thread once it is done : after this, the thread won't be
+         * interrupted, and an interrupt caused by the deadline is cleared.
+         */
+        synchronized void disarm() {
+            mThread = null;
+            if (mExpired) {
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return mExpired || mParent.isCancelled();
+        }
+
+        @Override
+        public void throwIfCancelled() {
+            if (isCancelled()) {
+                throw new CancellationException("Load was cancelled");
+            }
+        }
+
+        @Override
+        public void emit(final T partial) {
+            mParent.emit(partial);
+        }
+
+        @Override
+        public Executor executor() {
+            return mParent.executor();
+        }
+
+        @Override
+        public int priority() {
+            return mParent.priority();
+        }
+
+        @Override
+        public Revalidation<T> revalidation() {
+            return mParent.revalidation();
+        }
+    }
+}
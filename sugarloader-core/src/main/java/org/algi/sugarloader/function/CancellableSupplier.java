@@ -0,0 +1,16 @@
+package org.algi.sugarloader.function;
+
+import org.algi.sugarloader.CancellationToken;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface CancellableSupplier<T> {
+
+    /**
+     * @param token tells whether the result is still wanted. Check it between steps of a long
+     *              operation, and give up as soon as it is cancelled.
+     */
+    T get(CancellationToken token) throws Exception;
+}
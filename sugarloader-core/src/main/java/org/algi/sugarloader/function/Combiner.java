@@ -0,0 +1,9 @@
+package org.algi.sugarloader.function;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface Combiner<A, B, R> {
+    R combine(A a, B b) throws Exception;
+}
@@ -0,0 +1,9 @@
+package org.algi.sugarloader.function;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface Combiner3<A, B, C, R> {
+    R combine(A a, B b, C c) throws Exception;
+}
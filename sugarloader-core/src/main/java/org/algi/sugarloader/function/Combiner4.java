@@ -0,0 +1,9 @@
+package org.algi.sugarloader.function;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface Combiner4<A, B, C, D, R> {
+    R combine(A a, B b, C c, D d) throws Exception;
+}
@@ -0,0 +1,9 @@
+package org.algi.sugarloader.function;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface Emitter<T> {
+    void emit(T partial);
+}
@@ -0,0 +1,9 @@
+package org.algi.sugarloader.function;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface Function<T, R> {
+    R apply(T t) throws Exception;
+}
@@ -0,0 +1,16 @@
+package org.algi.sugarloader.function;
+
+import org.algi.sugarloader.Revalidation;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface RevalidatingSupplier<T> {
+
+    /**
+     * @param revalidation the value previously loaded, if any, and its validator (e.g. an ETag) :
+     *                     return {@link Revalidation#notModified()} if it is still up to date
+     */
+    T get(Revalidation<T> revalidation) throws Exception;
+}
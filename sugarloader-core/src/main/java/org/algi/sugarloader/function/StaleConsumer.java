@@ -0,0 +1,13 @@
+package org.algi.sugarloader.function;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface StaleConsumer<T> {
+
+    /**
+     * @param isStale true if {@code t} is a previously known value, and a fresher one is loading
+     */
+    void accept(T t, boolean isStale);
+}
@@ -0,0 +1,14 @@
+package org.algi.sugarloader.function;
+
+/**
+ * @author Alexandre Gianquinto
+ */
+
+public interface StreamingSupplier<T> {
+
+    /**
+     * @param emitter receives partial values while the final one is being computed
+     * @return the final value
+     */
+    T get(Emitter<T> emitter) throws Exception;
+}
@@ -0,0 +1,177 @@
+package org.algi.sugarloader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeSetTest {
+
+    /** Items are the same if they have the same id (first letter), whatever their content */
+    private static final ChangeSet.ItemCallback<String> BY_ID = new ChangeSet.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(final String oldItem, final String newItem) {
+            return oldItem.charAt(0) == newItem.charAt(0);
+        }
+
+        @Override
+        public boolean areContentsTheSame(final String oldItem, final String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    @Test
+    public void should_be_empty_when_lists_are_the_same() throws Exception {
+        assertTrue(ChangeSet.NONE.isEmpty());
+        assertTrue(ChangeSet.compute(list("a", "b", "c"), list("a", "b", "c"), BY_ID).isEmpty());
+        assertTrue(ChangeSet.compute(list(), list(), BY_ID).isEmpty());
+    }
+
+    @Test
+    public void should_dispatch_one_range_when_items_are_appended_or_cleared() throws Exception {
+        final Recorder appended = dispatch(list("a", "b"), list("a", "b", "c", "d"));
+        assertEquals(Collections.singletonList("inserted 2 2"), appended.events);
+
+        final Recorder cleared = dispatch(list("a", "b", "c"), list());
+        assertEquals(Collections.singletonList("removed 0 3"), cleared.events);
+    }
+
+    @Test
+    public void should_dispatch_change_when_content_differs() throws Exception {
+        final Recorder recorder = dispatch(list("a1", "b1", "c1"), list("a1", "b2", "c1"));
+        assertEquals(Collections.singletonList("changed 1 1"), recorder.events);
+    }
+
+    @Test
+    public void should_dispatch_positions_valid_after_previous_changes() throws Exception {
+        final List<String> oldList = list("a", "b", "c", "d");
+        final List<String> newList = list("x", "a", "c", "d", "e");
+
+        final Recorder recorder = dispatch(oldList, newList);
+        recorder.assertTurns(oldList, newList);
+        assertEquals(1, recorder.removed);
+        assertEquals(2, recorder.inserted);
+    }
+
+    @Test
+    public void should_dispatch_least_insertions_and_removals_for_any_lists() throws Exception {
+        final Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            final List<String> oldList = randomList(random);
+            final List<String> newList = randomList(random);
+
+            final Recorder recorder = dispatch(oldList, newList);
+            recorder.assertTurns(oldList, newList);
+            final int common = longestCommonSubsequence(oldList, newList);
+            assertEquals(oldList + " -> " + newList, oldList.size() - common, recorder.removed);
+            assertEquals(oldList + " -> " + newList, newList.size() - common, recorder.inserted);
+        }
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private static List<String> list(final String... items) {
+        return Arrays.asList(items);
+    }
+
+    private static Recorder dispatch(final List<String> oldList, final List<String> newList) {
+        final Recorder recorder = new Recorder(oldList);
+        ChangeSet.compute(oldList, newList, BY_ID).dispatchTo(recorder);
+        return recorder;
+    }
+
+    /**
+     * @return a list of items with distinct ids, some of them with a new content
+     */
+    private static List<String> randomList(final Random random) {
+        final List<String> list = new ArrayList<>();
+        for (char id = 'a'; id <= 'l'; id++) {
+            if (random.nextInt(3) > 0) {
+                list.add(id + (random.nextInt(4) == 0 ? "2" : "1"));
+            }
+        }
+        Collections.shuffle(list.subList(0, list.size() / 3), random);
+        return list;
+    }
+
+    /**
+     * @return the length of the longest common subsequence, comparing items by id
+     */
+    private static int longestCommonSubsequence(final List<String> a, final List<String> b) {
+        final int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = a.size() - 1; i >= 0; i--) {
+            for (int j = b.size() - 1; j >= 0; j--) {
+                lengths[i][j] = BY_ID.areItemsTheSame(a.get(i), b.get(j))
+                        ? lengths[i + 1][j + 1] + 1
+                        : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+            }
+        }
+        return lengths[0][0];
+    }
+
+    /**
+     * Applies the changes to a copy of the old list, as an adapter would : inserted items are
+     * unknown (null), changed ones are marked.
+     */
+    private static class Recorder implements ChangeSet.Listener {
+        final List<String> events = new ArrayList<>();
+        final List<String> items;
+        final List<Boolean> changed = new ArrayList<>();
+        int inserted;
+        int removed;
+
+        Recorder(final List<String> oldList) {
+            items = new ArrayList<>(oldList);
+            changed.addAll(Collections.nCopies(oldList.size(), false));
+        }
+
+        @Override
+        public void onInserted(final int position, final int count) {
+            events.add("inserted " + position + " " + count);
+            items.addAll(position, Collections.<String>nCopies(count, null));
+            changed.addAll(position, Collections.nCopies(count, false));
+            inserted += count;
+        }
+
+        @Override
+        public void onRemoved(final int position, final int count) {
+            events.add("removed " + position + " " + count);
+            items.subList(position, position + count).clear();
+            changed.subList(position, position + count).clear();
+            removed += count;
+        }
+
+        @Override
+        public void onChanged(final int position, final int count) {
+            events.add("changed " + position + " " + count);
+            for (int i = position; i < position + count; i++) {
+                assertFalse("inserted item changed at " + i, items.get(i) == null);
+                changed.set(i, true);
+            }
+        }
+
+        /**
+         * Check that the changes turned the old list into the new one.
+         */
+        void assertTurns(final List<String> oldList, final List<String> newList) {
+            final String message = oldList + " -> " + newList + " : " + events;
+            assertEquals(message, newList.size(), items.size());
+            for (int i = 0; i < items.size(); i++) {
+                final String item = items.get(i);
+                if (item != null) {
+                    assertTrue(message, BY_ID.areItemsTheSame(item, newList.get(i)));
+                    assertEquals(message, !item.equals(newList.get(i)), changed.get(i));
+                }
+            }
+        }
+    }
+}
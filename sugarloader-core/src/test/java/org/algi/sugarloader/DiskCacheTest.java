@@ -0,0 +1,179 @@
+package org.algi.sugarloader;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DiskCacheTest {
+
+    private static final long MAX_AGE = 60000;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void should_return_stored_bytes_when_put() throws Exception {
+        final DiskCache cache = DiskCache.open(mFolder.getRoot(), "cache");
+        cache.put("a", bytes(10, 1), MAX_AGE);
+        cache.put("b", bytes(20, 2), MAX_AGE);
+        cache.put("a", bytes(30, 3), MAX_AGE);
+
+        assertArrayEquals(bytes(30, 3), cache.get("a"));
+        assertArrayEquals(bytes(20, 2), cache.get("b"));
+        assertNull(cache.get("c"));
+    }
+
+    @Test
+    public void should_return_null_when_expired_or_removed() throws Exception {
+        final DiskCache cache = DiskCache.open(mFolder.getRoot(), "cache");
+        cache.put("expired", bytes(10, 1), 0);
+        cache.put("removed", bytes(10, 2), MAX_AGE);
+        cache.remove("removed");
+
+        assertNull(cache.get("expired"));
+        assertNull(cache.get("removed"));
+    }
+
+    @Test
+    public void should_return_same_instance_when_opened_again() throws Exception {
+        assertSame(DiskCache.open(mFolder.getRoot(), "cache"), DiskCache.open(mFolder.getRoot(), "cache"));
+    }
+
+    @Test
+    public void should_recover_records_when_journal_is_read_again() throws Exception {
+        final DiskCache cache = DiskCache.open(mFolder.getRoot(), "cache");
+        cache.put("a", bytes(10, 1), MAX_AGE);
+        cache.put("b", bytes(20, 2), MAX_AGE);
+        cache.put("c", bytes(30, 3), MAX_AGE);
+        cache.remove("b");
+
+        final DiskCache recovered = copy(mFolder.getRoot(), "recovered", 0);
+        assertArrayEquals(bytes(10, 1), recovered.get("a"));
+        assertNull(recovered.get("b"));
+        assertArrayEquals(bytes(30, 3), recovered.get("c"));
+    }
+
+    @Test
+    public void should_drop_last_record_when_journal_was_truncated() throws Exception {
+        final DiskCache cache = DiskCache.open(mFolder.getRoot(), "cache");
+        cache.put("a", bytes(10, 1), MAX_AGE);
+        cache.put("b", bytes(100, 2), MAX_AGE);
+
+        // As if the process died while writing "b"
+        final DiskCache recovered = copy(mFolder.getRoot(), "recovered", -5);
+        assertArrayEquals(bytes(10, 1), recovered.get("a"));
+        assertNull(recovered.get("b"));
+
+        // Next records are appended where the broken one started
+        recovered.put("c", bytes(30, 3), MAX_AGE);
+        final DiskCache again = copy(new File(mFolder.getRoot(), "recovered"), "again", 0);
+        assertArrayEquals(bytes(10, 1), again.get("a"));
+        assertNull(again.get("b"));
+        assertArrayEquals(bytes(30, 3), again.get("c"));
+    }
+
+    @Test
+    public void should_drop_garbage_when_journal_ends_with_it() throws Exception {
+        final DiskCache cache = DiskCache.open(mFolder.getRoot(), "cache");
+        cache.put("a", bytes(10, 1), MAX_AGE);
+        final byte[] garbage = new byte[32];
+        Arrays.fill(garbage, (byte) 0xFF);
+        final FileOutputStream output = new FileOutputStream(journal(mFolder.getRoot()), true);
+        try {
+            output.write(garbage);
+        } finally {
+            output.close();
+        }
+
+        final long size = journal(mFolder.getRoot()).length() - garbage.length;
+        final DiskCache recovered = copy(mFolder.getRoot(), "recovered", 0);
+        assertArrayEquals(bytes(10, 1), recovered.get("a"));
+        assertEquals(size, journal(new File(mFolder.getRoot(), "recovered")).length());
+    }
+
+    @Test
+    public void should_compact_journal_when_mostly_obsolete() throws Exception {
+        final DiskCache cache = DiskCache.open(mFolder.getRoot(), "cache");
+        for (int i = 0; i < 10; i++) {
+            cache.put("a", bytes(64 * 1024, i), MAX_AGE);
+        }
+
+        assertTrue(journal(mFolder.getRoot()).length() < 5 * 64 * 1024);
+        assertArrayEquals(bytes(64 * 1024, 9), cache.get("a"));
+        assertArrayEquals(bytes(64 * 1024, 9), copy(mFolder.getRoot(), "recovered", 0).get("a"));
+    }
+
+    @Test
+    public void should_delete_journal_when_cleared() throws Exception {
+        final DiskCache cache = DiskCache.open(mFolder.getRoot(), "cache");
+        cache.put("a", bytes(10, 1), MAX_AGE);
+
+        cache.clear();
+        assertFalse(journal(mFolder.getRoot()).exists());
+        assertNull(cache.get("a"));
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private static File journal(final File directory) {
+        return new File(directory, "cache.journal");
+    }
+
+    /**
+     * Copy the journal of a directory to another one, as it would be found by a new process, and
+     * open it there.
+     *
+     * @param lengthDelta how many bytes to remove from the end of the copy, if negative
+     */
+    private DiskCache copy(final File from, final String to, final int lengthDelta) throws IOException {
+        final File directory = new File(mFolder.getRoot(), to);
+        if (!directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        final byte[] content = read(journal(from));
+        final FileOutputStream output = new FileOutputStream(journal(directory));
+        try {
+            output.write(content, 0, content.length + lengthDelta);
+        } finally {
+            output.close();
+        }
+        return DiskCache.open(directory, "cache");
+    }
+
+    private static byte[] read(final File file) throws IOException {
+        final byte[] content = new byte[(int) file.length()];
+        final FileInputStream input = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < content.length) {
+                read += input.read(content, read, content.length - read);
+            }
+        } finally {
+            input.close();
+        }
+        return content;
+    }
+
+    private static byte[] bytes(final int length, final int seed) {
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed + i);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,164 @@
+package org.algi.sugarloader;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ForkTest {
+
+    private final ExecutorService mPool = Executors.newFixedThreadPool(2);
+    private final TestContext<Object> mParent = new TestContext<>(mPool);
+
+    @After
+    public void after() {
+        mPool.shutdownNow();
+    }
+
+    @Test
+    public void should_return_results_in_order_when_branches_finish_in_any_order() throws Exception {
+        final Fork fork = new Fork(mPool, mParent, 0);
+        fork.add(sleeping(30, "a"));
+        fork.add(sleeping(0, "b"));
+        fork.add(sleeping(10, "c"));
+
+        assertEquals(Arrays.<Object>asList("a", "b", "c"), fork.join());
+    }
+
+    @Test
+    public void should_run_branches_on_calling_thread_when_executor_does_not() throws Exception {
+        final ManualExecutor executor = new ManualExecutor();
+        final Fork fork = new Fork(executor, mParent, 0);
+        final Callable<Object> currentThread = new Callable<Object>() {
+            @Override
+            public Object call() {
+                return Thread.currentThread();
+            }
+        };
+        fork.add(currentThread);
+        fork.add(currentThread);
+
+        assertEquals(Arrays.<Object>asList(Thread.currentThread(), Thread.currentThread()), fork.join());
+    }
+
+    @Test
+    public void should_run_every_unpicked_branch_after_one_delay_when_executor_does_not() throws Exception {
+        final int branches = 50;
+        final Fork fork = new Fork(new ManualExecutor(), mParent, 0);
+        for (int i = 0; i < branches; i++) {
+            fork.add(sleeping(0, i));
+        }
+
+        final long start = System.nanoTime();
+        assertEquals(branches, fork.join().size());
+        // Waiting again between branches would take at least branches * STEAL_DELAY_MILLIS
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsed + " ms", elapsed < branches * Fork.STEAL_DELAY_MILLIS / 2);
+    }
+
+    @Test
+    public void should_throw_first_failure_and_cancel_other_branches() throws Exception {
+        final IOException failure = new IOException("offline");
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final Fork fork = new Fork(mPool, mParent, 0);
+        fork.add(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                // Fail once the other branch runs : a branch that has not started is just dropped
+                running.await(1, TimeUnit.SECONDS);
+                throw failure;
+            }
+        });
+        fork.add(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                running.countDown();
+                final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (System.nanoTime() < end) {
+                    if (fork.isCancelled()) {
+                        cancelled.countDown();
+                        break;
+                    }
+                }
+                return null;
+            }
+        });
+
+        try {
+            fork.join();
+            fail("Failure was not thrown");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void should_throw_cancellation_when_parent_is_cancelled() throws Exception {
+        final AtomicBoolean ran = new AtomicBoolean();
+        final Fork fork = new Fork(new ManualExecutor(), mParent, 0);
+        fork.add(new Callable<Object>() {
+            @Override
+            public Object call() {
+                ran.set(true);
+                return null;
+            }
+        });
+        mParent.cancelled = true;
+
+        try {
+            fork.join();
+            fail("Cancellation was not thrown");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        assertFalse(ran.get());
+        assertTrue(fork.isCancelled());
+    }
+
+    @Test
+    public void should_cancel_branches_when_calling_thread_is_interrupted() throws Exception {
+        final Fork fork = new Fork(mPool, mParent, 0);
+        fork.add(sleeping(5000, "a"));
+
+        Thread.currentThread().interrupt();
+        try {
+            fork.join();
+            fail("Interruption was not thrown");
+        } catch (InterruptedException e) {
+            // Expected
+        }
+        // The interrupt is kept for the caller
+        assertTrue(Thread.interrupted());
+        assertTrue(fork.isCancelled());
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private static Callable<Object> sleeping(final long millis, final Object value) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Thread.sleep(millis);
+                return value;
+            }
+        };
+    }
+}
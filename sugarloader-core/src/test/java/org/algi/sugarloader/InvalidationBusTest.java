@@ -0,0 +1,105 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InvalidationBusTest {
+
+    private ManualHost mHost;
+    private final List<LoaderEngine<Object>> mEngines = new ArrayList<>();
+
+    @Before
+    public void before() {
+        mHost = new ManualHost();
+    }
+
+    @After
+    public void after() {
+        for (LoaderEngine<Object> engine : mEngines) {
+            engine.reset();
+        }
+    }
+
+    @Test
+    public void should_coalesce_invalidations_when_they_come_in_burst() throws Exception {
+        final RecordingTarget<Object> target = new RecordingTarget<>();
+        engine(target, "orders");
+
+        InvalidationBus.invalidate("orders");
+        InvalidationBus.invalidate("orders");
+        InvalidationBus.invalidate("orders");
+        assertEquals(1, mHost.delayed.size());
+        assertEquals(InvalidationBus.COALESCE_MILLIS, (long) mHost.delays.get(0));
+        assertEquals(0, target.contentChanged);
+
+        mHost.runDelayed();
+        assertEquals(1, target.contentChanged);
+
+        // Next burst is coalesced on its own
+        InvalidationBus.invalidate("orders");
+        InvalidationBus.invalidate("orders");
+        mHost.runDelayed();
+        assertEquals(2, target.contentChanged);
+    }
+
+    @Test
+    public void should_notify_only_loaders_depending_on_invalidated_keys() throws Exception {
+        final RecordingTarget<Object> orders = new RecordingTarget<>();
+        final RecordingTarget<Object> customers = new RecordingTarget<>();
+        final RecordingTarget<Object> both = new RecordingTarget<>();
+        engine(orders, "orders");
+        engine(customers, "customers");
+        engine(both, "orders", "customers");
+
+        InvalidationBus.invalidate("orders", "customers");
+        InvalidationBus.invalidate("orders");
+        mHost.runDelayed();
+
+        assertEquals(1, orders.contentChanged);
+        assertEquals(1, customers.contentChanged);
+        assertEquals(1, both.contentChanged);
+
+        InvalidationBus.invalidate("products");
+        assertTrue(mHost.delayed.isEmpty());
+    }
+
+    @Test
+    public void should_not_notify_when_reset() throws Exception {
+        final RecordingTarget<Object> target = new RecordingTarget<>();
+        final LoaderEngine<Object> engine = engine(target, "orders");
+
+        InvalidationBus.invalidate("orders");
+        engine.reset();
+        assertTrue(mHost.delayed.isEmpty());
+
+        InvalidationBus.invalidate("orders");
+        assertTrue(mHost.delayed.isEmpty());
+        assertEquals(0, target.contentChanged);
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private LoaderEngine<Object> engine(final RecordingTarget<Object> target, final String... dependsOn) {
+        final Job<Object> job = Job.of(new Supplier<Object>() {
+            @Override
+            public Object get() {
+                return null;
+            }
+        });
+        final LoadSpec<Object> spec = new LoadSpec<>("test", job, null, new ManualExecutor(), 0, true, mHost, null, null,
+                null, dependsOn, null, ResultRetention.KEEP, MemoryCache.unitWeigher());
+        final LoaderEngine<Object> engine = new LoaderEngine<>(spec, target);
+        mEngines.add(engine);
+        return engine;
+    }
+}
@@ -0,0 +1,122 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Emitter;
+import org.algi.sugarloader.function.Function;
+import org.algi.sugarloader.function.Predicate;
+import org.algi.sugarloader.function.StreamingSupplier;
+import org.algi.sugarloader.function.Supplier;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JobTest {
+
+    private static final Function<String, Integer> LENGTH = new Function<String, Integer>() {
+        @Override
+        public Integer apply(final String value) {
+            return value.length();
+        }
+    };
+
+    private final TestContext<Integer> mContext = new TestContext<>(null);
+
+    @Test
+    public void should_apply_function_to_value_and_partial_values_when_mapped() throws Exception {
+        final Job<Integer> job = Job.map(streaming("ab", "abcd"), LENGTH);
+
+        assertEquals(4, (int) job.run(mContext));
+        assertEquals(Arrays.asList(2), mContext.emitted);
+    }
+
+    @Test
+    public void should_run_supplier_of_value_and_drop_partial_values_when_flat_mapped() throws Exception {
+        final Job<Integer> job = Job.flatMap(streaming("ab", "abcd"), new Function<String, Supplier<Integer>>() {
+            @Override
+            public Supplier<Integer> apply(final String value) {
+                return new Supplier<Integer>() {
+                    @Override
+                    public Integer get() {
+                        return value.length() * 10;
+                    }
+                };
+            }
+        });
+
+        assertEquals(40, (int) job.run(mContext));
+        assertTrue(mContext.emitted.isEmpty());
+    }
+
+    @Test
+    public void should_not_apply_function_when_cancelled() throws Exception {
+        final Job<Integer> job = Job.map(Job.of(new Supplier<String>() {
+            @Override
+            public String get() {
+                mContext.cancelled = true;
+                return "abc";
+            }
+        }), new Function<String, Integer>() {
+            @Override
+            public Integer apply(final String value) {
+                fail("Function applied after cancellation");
+                return null;
+            }
+        });
+
+        try {
+            job.run(mContext);
+            fail("Cancellation was not thrown");
+        } catch (CancellationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void should_return_value_when_filter_accepts_it() throws Exception {
+        final TestContext<String> context = new TestContext<>(null);
+        assertEquals("abc", Job.filter(streaming("a", "abc"), nonEmpty()).run(context));
+    }
+
+    @Test
+    public void should_fail_when_filter_rejects_value() throws Exception {
+        final TestContext<String> context = new TestContext<>(null);
+        try {
+            Job.filter(streaming("a", ""), nonEmpty()).run(context);
+            fail("Value was not filtered out");
+        } catch (NoSuchElementException e) {
+            // Results may be large, or hold personal data : they must not end up in logs
+            assertEquals("Result was filtered out", e.getMessage());
+        }
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    /**
+     * @return a job emitting {@code partial}, then returning {@code value}
+     */
+    private static Job<String> streaming(final String partial, final String value) {
+        return Job.ofStreaming(new StreamingSupplier<String>() {
+            @Override
+            public String get(final Emitter<String> emitter) {
+                emitter.emit(partial);
+                return value;
+            }
+        });
+    }
+
+    private static Predicate<String> nonEmpty() {
+        return new Predicate<String>() {
+            @Override
+            public boolean test(final String value) {
+                return !value.isEmpty();
+            }
+        };
+    }
+}
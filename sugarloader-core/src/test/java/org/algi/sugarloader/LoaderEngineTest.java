@@ -0,0 +1,228 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Emitter;
+import org.algi.sugarloader.function.RevalidatingSupplier;
+import org.algi.sugarloader.function.StreamingSupplier;
+import org.algi.sugarloader.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LoaderEngineTest {
+
+    private ManualHost mHost;
+    private ManualExecutor mExecutor;
+    private RecordingTarget<Object> mTarget;
+    private LoaderEngine<Object> mEngine;
+
+    @Before
+    public void before() {
+        mHost = new ManualHost();
+        mExecutor = new ManualExecutor();
+        mTarget = new RecordingTarget<>();
+    }
+
+    @After
+    public void after() {
+        if (mEngine != null) {
+            mEngine.reset();
+        }
+        LoaderMetrics.setListener(null);
+    }
+
+    @Test
+    public void should_deliver_result_on_host_when_load_finishes() throws Exception {
+        mEngine = engine(Job.of(value("a")), ResultRetention.KEEP);
+        assertTrue(mEngine.needsLoad());
+
+        mEngine.load();
+        assertFalse(mEngine.needsLoad());
+        mExecutor.runAll();
+        assertTrue(mTarget.delivered.isEmpty());
+
+        mHost.runPosted();
+        assertEquals(1, mTarget.delivered.size());
+        assertTrue(mTarget.last().isSuccess);
+        assertEquals("a", mTarget.last().result);
+        mEngine.retain(mTarget.last());
+        assertSame(mTarget.last(), mEngine.retained());
+        assertFalse(mEngine.needsLoad());
+    }
+
+    @Test
+    public void should_deliver_error_when_job_fails() throws Exception {
+        final IOException error = new IOException("offline");
+        mEngine = engine(Job.of(new Supplier<Object>() {
+            @Override
+            public Object get() throws Exception {
+                throw error;
+            }
+        }), ResultRetention.KEEP);
+
+        load();
+        assertEquals(1, mTarget.delivered.size());
+        assertFalse(mTarget.last().isSuccess);
+        assertSame(error, mTarget.last().error);
+    }
+
+    @Test
+    public void should_deliver_only_latest_load_when_superseded() throws Exception {
+        mEngine = engine(Job.of(counter()), ResultRetention.KEEP);
+
+        // The first result is already posted when the second load starts
+        mEngine.load();
+        mExecutor.runAll();
+        mEngine.load();
+        mExecutor.runAll();
+        mHost.runPosted();
+
+        assertEquals(1, mTarget.delivered.size());
+        assertEquals(2, mTarget.last().result);
+    }
+
+    @Test
+    public void should_deliver_nothing_when_cancelled() throws Exception {
+        mEngine = engine(Job.of(value("a")), ResultRetention.KEEP);
+
+        mEngine.load();
+        mEngine.cancel();
+        mExecutor.runAll();
+        mHost.runPosted();
+
+        assertTrue(mTarget.delivered.isEmpty());
+        assertTrue(mEngine.needsLoad());
+    }
+
+    @Test
+    public void should_not_report_load_when_cancelled_while_running() throws Exception {
+        final LoaderMetricsRecorder recorder = new LoaderMetricsRecorder();
+        LoaderMetrics.setListener(recorder);
+        mEngine = engine(Job.of(new Supplier<Object>() {
+            @Override
+            public Object get() {
+                mEngine.cancel();
+                return "a";
+            }
+        }), ResultRetention.KEEP);
+
+        mEngine.load();
+        mExecutor.runAll();
+        mHost.runPosted();
+
+        assertTrue(mTarget.delivered.isEmpty());
+        assertTrue(recorder.snapshot().isEmpty());
+    }
+
+    @Test
+    public void should_deliver_nothing_when_target_is_inactive() throws Exception {
+        mEngine = engine(Job.of(value("a")), ResultRetention.KEEP);
+
+        mEngine.load();
+        mExecutor.runAll();
+        mTarget.active = false;
+        mHost.runPosted();
+
+        assertTrue(mTarget.delivered.isEmpty());
+    }
+
+    @Test
+    public void should_deliver_partial_values_before_result() throws Exception {
+        mEngine = engine(Job.ofStreaming(new StreamingSupplier<Object>() {
+            @Override
+            public Object get(final Emitter<Object> emitter) throws Exception {
+                emitter.emit("partial");
+                return "a";
+            }
+        }), ResultRetention.KEEP);
+
+        load();
+        assertEquals(2, mTarget.delivered.size());
+        assertTrue(mTarget.delivered.get(0).isPartial);
+        assertEquals("partial", mTarget.delivered.get(0).result);
+        assertFalse(mTarget.last().isPartial);
+        assertEquals("a", mTarget.last().result);
+    }
+
+    @Test
+    public void should_deliver_nothing_when_revalidated_as_not_modified() throws Exception {
+        mEngine = engine(Job.ofRevalidating(new RevalidatingSupplier<Object>() {
+            @Override
+            public Object get(final Revalidation<Object> revalidation) throws Exception {
+                return revalidation.hasPrevious() ? revalidation.notModified() : "a";
+            }
+        }), ResultRetention.KEEP);
+
+        load();
+        load();
+        assertEquals(1, mTarget.delivered.size());
+        assertEquals("a", mTarget.last().result);
+    }
+
+    @Test
+    public void should_deliver_again_when_same_value_is_loaded_again() throws Exception {
+        // Shared results (booleans, null) must not be taken for a not modified value
+        mEngine = engine(Job.of(value(Boolean.TRUE)), ResultRetention.KEEP);
+
+        load();
+        load();
+        assertEquals(2, mTarget.delivered.size());
+    }
+
+    @Test
+    public void should_release_result_when_stopped() throws Exception {
+        mEngine = engine(Job.of(value("a")), ResultRetention.DROP_WHEN_STOPPED);
+
+        load();
+        mEngine.setStarted(false);
+
+        assertTrue(mTarget.last().isReleased());
+        assertTrue(mEngine.needsLoad());
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private LoaderEngine<Object> engine(final Job<Object> job, final ResultRetention retention) {
+        final LoadSpec<Object> spec = new LoadSpec<>("test", job, null, mExecutor, 0, true, mHost, null, null, null,
+                new String[0], null, retention, MemoryCache.unitWeigher());
+        return new LoaderEngine<>(spec, mTarget);
+    }
+
+    /**
+     * Load, and retain what was delivered, as the loader framework does.
+     */
+    private void load() {
+        mEngine.load();
+        mExecutor.runAll();
+        mHost.runPosted();
+        mEngine.retain(mTarget.last());
+    }
+
+    private static Supplier<Object> value(final Object value) {
+        return new Supplier<Object>() {
+            @Override
+            public Object get() {
+                return value;
+            }
+        };
+    }
+
+    private static Supplier<Object> counter() {
+        return new Supplier<Object>() {
+            private int mCount;
+
+            @Override
+            public Object get() {
+                return ++mCount;
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor whose tasks only run when the test says so, on the test thread.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class ManualExecutor implements Executor {
+
+    final List<Runnable> tasks = new ArrayList<>();
+
+    @Override
+    public synchronized void execute(final Runnable runnable) {
+        tasks.add(runnable);
+    }
+
+    /**
+     * Run the given task, out of the queue.
+     */
+    void run(final int index) {
+        final Runnable task;
+        synchronized (this) {
+            task = tasks.remove(index);
+        }
+        task.run();
+    }
+
+    /**
+     * Run the queued tasks, in the order they were submitted.
+     */
+    void runAll() {
+        while (!tasks.isEmpty()) {
+            run(0);
+        }
+    }
+}
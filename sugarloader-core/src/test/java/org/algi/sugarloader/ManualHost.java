@@ -0,0 +1,75 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Host whose posted runnables only run when the test says so, on the test thread. Delayed
+ * runnables are kept apart, and their delay ignored.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class ManualHost implements LoaderHost {
+
+    private final List<Runnable> mPosted = new ArrayList<>();
+
+    final List<Runnable> delayed = new ArrayList<>();
+
+    final List<Long> delays = new ArrayList<>();
+
+    @Override
+    public synchronized void post(final Runnable runnable) {
+        mPosted.add(runnable);
+    }
+
+    @Override
+    public synchronized void postDelayed(final Runnable runnable, final long delayMillis) {
+        delayed.add(runnable);
+        delays.add(delayMillis);
+    }
+
+    @Override
+    public void postOnFrame(final Runnable runnable) {
+        post(runnable);
+    }
+
+    @Override
+    public synchronized void cancel(final Runnable runnable) {
+        for (int i = delayed.size() - 1; i >= 0; i--) {
+            if (delayed.get(i) == runnable) {
+                delayed.remove(i);
+                delays.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Run the posted runnables, and those they post, until there are none left.
+     */
+    void runPosted() {
+        Runnable next;
+        while ((next = poll(mPosted)) != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * Run the delayed runnables, as if their delay had elapsed.
+     */
+    void runDelayed() {
+        Runnable next;
+        while ((next = poll(delayed)) != null) {
+            next.run();
+        }
+    }
+
+    private synchronized Runnable poll(final List<Runnable> runnables) {
+        if (runnables.isEmpty()) {
+            return null;
+        }
+        if (runnables == delayed) {
+            delays.remove(0);
+        }
+        return runnables.remove(0);
+    }
+}
@@ -0,0 +1,123 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+import org.algi.sugarloader.function.Weigher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class MemoryCacheTest {
+
+    private static final long TTL = 60000;
+
+    private final MemoryCache mCache = MemoryCache.shared();
+
+    @Before
+    public void before() {
+        mCache.clear();
+        mCache.setMaxWeight(1024);
+    }
+
+    @After
+    public void after() {
+        before();
+    }
+
+    @Test
+    public void should_return_result_when_put() throws Exception {
+        final Result<String> result = Result.success("a");
+        mCache.put("key", result, 1, TTL);
+
+        assertSame(result, mCache.get("key"));
+        assertNull(mCache.get("other"));
+        assertEquals(1, mCache.weight());
+    }
+
+    @Test
+    public void should_replace_result_when_put_again() throws Exception {
+        mCache.put("key", Result.success("a"), 5, TTL);
+        final Result<String> result = Result.success("b");
+        mCache.put("key", result, 3, TTL);
+
+        assertSame(result, mCache.get("key"));
+        assertEquals(3, mCache.weight());
+    }
+
+    @Test
+    public void should_evict_least_recently_used_when_over_max_weight() throws Exception {
+        mCache.setMaxWeight(3);
+        mCache.put("a", Result.success("a"), 1, TTL);
+        mCache.put("b", Result.success("b"), 1, TTL);
+        mCache.put("c", Result.success("c"), 1, TTL);
+        // "b" becomes the least recently used
+        mCache.get("a");
+
+        mCache.put("d", Result.success("d"), 1, TTL);
+        assertNull(mCache.get("b"));
+        assertNotNull(mCache.get("a"));
+        assertNotNull(mCache.get("c"));
+        assertNotNull(mCache.get("d"));
+        assertEquals(3, mCache.weight());
+    }
+
+    @Test
+    public void should_not_keep_result_heavier_than_max_weight() throws Exception {
+        mCache.setMaxWeight(10);
+        mCache.put("a", Result.success("a"), 1, TTL);
+        mCache.put("big", Result.success("big"), 11, TTL);
+
+        assertNull(mCache.get("big"));
+        assertNotNull(mCache.get("a"));
+        assertEquals(1, mCache.weight());
+    }
+
+    @Test
+    public void should_return_expired_result_only_when_allowed() throws Exception {
+        mCache.put("key", Result.success("a"), 1, 0);
+
+        assertNotNull(mCache.get("key", true));
+        assertNull(mCache.get("key"));
+        // An expired result that was asked for is dropped
+        assertNull(mCache.get("key", true));
+        assertEquals(0, mCache.weight());
+    }
+
+    @Test
+    public void should_evict_half_when_trimmed() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            mCache.put("key" + i, Result.success(i), 1, TTL);
+        }
+
+        mCache.trim(false);
+        assertEquals(2, mCache.weight());
+        assertNull(mCache.get("key0"));
+        assertNotNull(mCache.get("key3"));
+
+        mCache.trim(true);
+        assertEquals(0, mCache.weight());
+    }
+
+    @Test
+    public void should_store_value_when_caching_job_runs() throws Exception {
+        final Job<String> job = mCache.caching("key", TTL, new Weigher<String>() {
+            @Override
+            public int weigh(final String value) {
+                return value.length();
+            }
+        }, Job.of(new Supplier<String>() {
+            @Override
+            public String get() {
+                return "abc";
+            }
+        }));
+
+        assertEquals("abc", job.run(new TestContext<String>(null)));
+        assertEquals("abc", mCache.<String>get("key").result);
+        assertEquals(3, mCache.weight());
+    }
+}
@@ -0,0 +1,144 @@
+package org.algi.sugarloader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MonitoredExecutorTest {
+
+    private final MonitoredExecutor mExecutor = new MonitoredExecutor("test", 1);
+    private final List<String> mRan = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch mBusy = new CountDownLatch(1);
+
+    @Before
+    public void before() throws Exception {
+        // Keep the only thread busy, so next tasks are queued
+        final CountDownLatch started = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    mBusy.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void after() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void should_run_queued_tasks_by_priority_then_submission() throws Exception {
+        mExecutor.execute(new Task("a", 0));
+        mExecutor.execute(new Task("b", 5));
+        mExecutor.execute(new Task("c", 0));
+        mExecutor.execute(new Task("d", 5));
+        mExecutor.execute(new Task("e", -5));
+
+        assertEquals(Arrays.asList("b", "d", "a", "c", "e"), runQueued());
+    }
+
+    @Test
+    public void should_move_queued_task_when_reprioritized() throws Exception {
+        final Task a = new Task("a", 0);
+        final Task b = new Task("b", 0);
+        mExecutor.execute(a);
+        mExecutor.execute(b);
+
+        b.priority = 1;
+        mExecutor.reprioritize(b);
+        assertEquals(Arrays.asList("b", "a"), runQueued());
+    }
+
+    @Test
+    public void should_not_run_task_when_removed() throws Exception {
+        final Task a = new Task("a", 0);
+        mExecutor.execute(a);
+        mExecutor.execute(new Task("b", 0));
+
+        assertTrue(mExecutor.remove(a));
+        assertFalse(mExecutor.remove(a));
+        assertEquals(Collections.singletonList("b"), runQueued());
+    }
+
+    @Test
+    public void should_not_run_task_when_its_queue_entry_is_removed() throws Exception {
+        mExecutor.execute(new Task("a", 0));
+        mExecutor.execute(new Task("b", 0));
+
+        // e.g. from a RejectedExecutionHandler, or a caller draining the queue
+        assertTrue(mExecutor.remove(mExecutor.getQueue().peek()));
+        assertEquals(Collections.singletonList("b"), runQueued());
+    }
+
+    @Test
+    public void should_count_saturation_when_tasks_wait() throws Exception {
+        mExecutor.execute(new Task("a", 0));
+        mExecutor.execute(new Task("b", 0));
+
+        assertEquals(3, mExecutor.getSubmittedCount());
+        assertEquals(2, mExecutor.getSaturatedCount());
+        assertEquals(2, mExecutor.getQueueDepth());
+        assertEquals(2, mExecutor.getPeakQueueDepth());
+        assertEquals(1, mExecutor.getRunningCount());
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    /**
+     * Release the busy thread, and wait for the queued tasks.
+     *
+     * @return the names of the tasks, in the order they ran
+     */
+    private List<String> runQueued() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mExecutor.execute(new Task("done", Integer.MIN_VALUE) {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        mBusy.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return mRan;
+    }
+
+    private class Task implements Runnable, Prioritized {
+        final String mName;
+        volatile int priority;
+
+        Task(final String name, final int priority) {
+            mName = name;
+            this.priority = priority;
+        }
+
+        @Override
+        public int priority() {
+            return priority;
+        }
+
+        @Override
+        public void run() {
+            mRan.add(mName);
+        }
+    }
+}
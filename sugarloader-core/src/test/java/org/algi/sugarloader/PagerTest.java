@@ -0,0 +1,203 @@
+package org.algi.sugarloader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PagerTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final int PAGE_COUNT = 5;
+
+    private final ManualHost mHost = new ManualHost();
+    private final ManualExecutor mExecutor = new ManualExecutor();
+    private final List<Integer> mRequested = new ArrayList<>();
+    private int mChanges;
+    /** Key of the page that fails to load next time, if any */
+    private Integer mFailing;
+    private Pager<Integer, String> mPager;
+
+    @Before
+    public void before() throws Exception {
+        mPager = Pager.source(0, new PageSupplier<Integer, String>() {
+            @Override
+            public Page<Integer, String> get(final Integer key) throws Exception {
+                mRequested.add(key);
+                if (key.equals(mFailing)) {
+                    mFailing = null;
+                    throw new IOException("offline");
+                }
+                final List<String> items = new ArrayList<>();
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    items.add(key + "-" + i);
+                }
+                return key < PAGE_COUNT - 1 ? Page.of(items, key + 1) : Page.<Integer, String>last(items);
+            }
+        }).window(1).prefetchDistance(0).get();
+        mPager.attach(mHost, mExecutor);
+        mPager.setListener(new Pager.Listener() {
+            @Override
+            public void onPagesChanged(final Pager<?, ?> pager) {
+                mChanges++;
+            }
+        });
+    }
+
+    @Test
+    public void should_hold_first_page_when_loaded() throws Exception {
+        assertEquals(PAGE_SIZE, mPager.getItemCount());
+        assertEquals("0-3", mPager.getItem(3));
+        assertTrue(mPager.hasNext());
+        assertFalse(mPager.isLoading());
+    }
+
+    @Test
+    public void should_load_next_page_when_last_one_is_displayed() throws Exception {
+        mPager.loadAround(5);
+        assertTrue(mPager.isLoading());
+        load();
+
+        assertEquals(2 * PAGE_SIZE, mPager.getItemCount());
+        assertEquals("1-2", mPager.getItem(PAGE_SIZE + 2));
+        assertEquals(1, mChanges);
+        assertFalse(mPager.isLoading());
+    }
+
+    @Test
+    public void should_load_each_page_once_when_displayed_again() throws Exception {
+        mPager.loadAround(5);
+        mPager.loadAround(6);
+        load();
+
+        assertEquals(2, mRequested.size());
+    }
+
+    @Test
+    public void should_stop_when_last_page_is_loaded() throws Exception {
+        scrollToEnd();
+
+        assertEquals(PAGE_COUNT * PAGE_SIZE, mPager.getItemCount());
+        assertFalse(mPager.hasNext());
+        mPager.loadAround(PAGE_COUNT * PAGE_SIZE - 1);
+        assertTrue(mExecutor.tasks.isEmpty());
+    }
+
+    @Test
+    public void should_drop_pages_out_of_window_and_load_them_again() throws Exception {
+        scrollToEnd();
+        assertNull(mPager.getItem(0));
+        assertNull(mPager.getItem(2 * PAGE_SIZE));
+        assertEquals("3-0", mPager.getItem(3 * PAGE_SIZE));
+
+        mRequested.clear();
+        mPager.loadAround(0);
+        load();
+        assertEquals(0, (int) mRequested.get(0));
+        assertEquals("0-0", mPager.getItem(0));
+        assertEquals("1-0", mPager.getItem(PAGE_SIZE));
+        // Back out of the window
+        assertNull(mPager.getItem(3 * PAGE_SIZE));
+    }
+
+    @Test
+    public void should_stop_loading_until_retried_when_page_fails() throws Exception {
+        mFailing = 1;
+        mPager.loadAround(5);
+        load();
+
+        final Throwable error = mPager.getError();
+        assertTrue(error instanceof IOException);
+        assertEquals(PAGE_SIZE, mPager.getItemCount());
+        mPager.loadAround(6);
+        assertTrue(mExecutor.tasks.isEmpty());
+        assertSame(error, mPager.getError());
+
+        mPager.retry();
+        load();
+        assertNull(mPager.getError());
+        assertEquals(2 * PAGE_SIZE, mPager.getItemCount());
+    }
+
+    @Test
+    public void should_find_items_when_looked_up_in_any_order() throws Exception {
+        mPager.loadAround(5);
+        load();
+        mPager.loadAround(PAGE_SIZE + 5);
+        load();
+
+        assertEquals("2-9", mPager.getItem(3 * PAGE_SIZE - 1));
+        assertEquals("1-0", mPager.getItem(PAGE_SIZE));
+        assertEquals("0-0", mPager.getItem(0));
+        assertEquals("2-0", mPager.getItem(2 * PAGE_SIZE));
+        assertEquals("0-9", mPager.getItem(PAGE_SIZE - 1));
+        try {
+            mPager.getItem(3 * PAGE_SIZE);
+            fail("Position after the last item was found");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void should_discard_page_when_loaded_out_of_window() throws Exception {
+        scrollToEnd();
+        mPager.loadAround(0);
+        // Back to the end before pages 0 and 1 are loaded
+        mPager.loadAround(PAGE_COUNT * PAGE_SIZE - 1);
+        load();
+
+        assertNull(mPager.getItem(0));
+        assertNull(mPager.getItem(PAGE_SIZE));
+        assertEquals("4-0", mPager.getItem(4 * PAGE_SIZE));
+        assertEquals(PAGE_COUNT * PAGE_SIZE, mPager.getItemCount());
+    }
+
+    @Test
+    public void should_cancel_page_loads_when_released_by_every_loader() throws Exception {
+        mPager.hold();
+        mPager.hold();
+        mPager.loadAround(5);
+        mPager.release();
+        assertTrue(mPager.isLoading());
+
+        mPager.release();
+        assertFalse(mPager.isLoading());
+        load();
+        // Only the first page, loaded by the loader
+        assertEquals(1, mRequested.size());
+        assertEquals(0, mChanges);
+        // Not attached anymore
+        mPager.loadAround(6);
+        assertTrue(mExecutor.tasks.isEmpty());
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    /**
+     * Run the pending page loads, and deliver them.
+     */
+    private void load() {
+        mExecutor.runAll();
+        mHost.runPosted();
+    }
+
+    private void scrollToEnd() {
+        for (int position = 0; position < mPager.getItemCount(); position++) {
+            mPager.loadAround(position);
+            load();
+        }
+    }
+}
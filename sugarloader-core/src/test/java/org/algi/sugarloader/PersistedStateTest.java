@@ -0,0 +1,176 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PersistedStateTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Serialized values start with it : anything else is corrupted */
+    private static final byte[] MAGIC = {'S', 'L'};
+
+    private static final ResultSerializer<String> SERIALIZER = new ResultSerializer<String>() {
+        @Override
+        public byte[] serialize(final String value) {
+            final byte[] text = value.getBytes(UTF_8);
+            final byte[] bytes = Arrays.copyOf(MAGIC, MAGIC.length + text.length);
+            System.arraycopy(text, 0, bytes, MAGIC.length, text.length);
+            return bytes;
+        }
+
+        @Override
+        public String deserialize(final byte[] bytes) throws IOException {
+            if (bytes.length < MAGIC.length || bytes[0] != MAGIC[0] || bytes[1] != MAGIC[1]) {
+                throw new IOException("Corrupted");
+            }
+            return new String(bytes, MAGIC.length, bytes.length - MAGIC.length, UTF_8);
+        }
+    };
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final TestContext<String> mContext = new TestContext<>(null);
+
+    private int mLoads;
+
+    private final Job<String> mJob = Job.of(new Supplier<String>() {
+        @Override
+        public String get() {
+            mLoads++;
+            return "loaded";
+        }
+    });
+
+    @Test
+    public void should_serialize_value_when_loaded() throws Exception {
+        final PersistedState<String> state = new PersistedState<>(SERIALIZER, 1024, null, null, null);
+        assertNull(state.bytes());
+
+        assertEquals("loaded", state.persisting(mJob).run(mContext));
+        assertArrayEquals(SERIALIZER.serialize("loaded"), state.bytes());
+    }
+
+    @Test
+    public void should_restore_from_file_once_when_given_one() throws Exception {
+        final File file = write(SERIALIZER.serialize("restored"));
+        final PersistedState<String> state = new PersistedState<>(SERIALIZER, 1024, null, file, null);
+        final Job<String> job = state.persisting(mJob);
+
+        assertEquals("restored", job.run(mContext));
+        assertEquals(0, mLoads);
+        assertArrayEquals(SERIALIZER.serialize("restored"), state.bytes());
+        assertFalse(file.exists());
+
+        assertEquals("loaded", job.run(mContext));
+        assertEquals(1, mLoads);
+    }
+
+    @Test
+    public void should_load_again_when_file_is_corrupted() throws Exception {
+        final File file = write("garbage".getBytes(UTF_8));
+        final PersistedState<String> state = new PersistedState<>(SERIALIZER, 1024, null, file, null);
+
+        assertEquals("loaded", state.persisting(mJob).run(mContext));
+        assertEquals(1, mLoads);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void should_load_again_when_file_is_lost() throws Exception {
+        final File file = new File(mFolder.getRoot(), "lost");
+        final PersistedState<String> state = new PersistedState<>(SERIALIZER, 1024, null, file, null);
+
+        assertEquals("loaded", state.persisting(mJob).run(mContext));
+        assertEquals(1, mLoads);
+    }
+
+    @Test
+    public void should_write_side_file_in_background_when_value_is_too_big() throws Exception {
+        final File directory = mFolder.newFolder();
+        final PersistedState<String> state = new PersistedState<>(SERIALIZER, 4, null, null, directory);
+
+        assertEquals("loaded", state.persisting(mJob).run(mContext));
+        assertNull(state.bytes());
+        final File file = awaitSavedFile(state);
+        assertEquals(directory, file.getParentFile());
+
+        // As restored after process death
+        final PersistedState<String> restored = new PersistedState<>(SERIALIZER, 4, null, file, directory);
+        assertEquals("loaded", restored.persisting(mJob).run(mContext));
+        assertEquals(1, mLoads);
+    }
+
+    @Test
+    public void should_replace_side_file_when_value_is_loaded_again() throws Exception {
+        final PersistedState<String> state = new PersistedState<>(SERIALIZER, 4, null, null, mFolder.newFolder());
+        final Job<String> job = state.persisting(mJob);
+
+        job.run(mContext);
+        final File first = awaitSavedFile(state);
+        job.run(mContext);
+        final File second = awaitSavedFile(state);
+
+        assertNotEquals(first, second);
+        assertFalse(first.exists());
+        assertTrue(second.exists());
+    }
+
+    @Test
+    public void should_not_save_side_file_when_it_has_no_directory() throws Exception {
+        final PersistedState<String> state = new PersistedState<>(SERIALIZER, 4, null, null, null);
+
+        assertEquals("loaded", state.persisting(mJob).run(mContext));
+        assertNull(state.bytes());
+        assertNull(state.savedFile());
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    /**
+     * @return the side file of the state, once written on the io pool
+     */
+    private static File awaitSavedFile(final PersistedState<?> state) throws InterruptedException {
+        final long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < end) {
+            final File file = state.savedFile();
+            if (file != null) {
+                return file;
+            }
+            Thread.sleep(10);
+        }
+        fail("Side file was not written");
+        return null;
+    }
+
+    private File write(final byte[] bytes) throws IOException {
+        final File file = mFolder.newFile();
+        final FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+}
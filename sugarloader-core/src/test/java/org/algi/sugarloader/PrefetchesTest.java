@@ -0,0 +1,123 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Supplier;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PrefetchesTest {
+
+    private final ManualExecutor mExecutor = new ManualExecutor();
+    private final ExecutorService mLoaders = Executors.newSingleThreadExecutor();
+    private final CountingJob mJob = new CountingJob();
+
+    @After
+    public void after() {
+        mLoaders.shutdownNow();
+    }
+
+    @Test
+    public void should_return_prefetched_value_when_claimed() throws Exception {
+        Prefetches.start("claimed", value("prefetched"), mExecutor);
+        mExecutor.runAll();
+
+        assertEquals("prefetched", claim("claimed"));
+        assertEquals(0, mJob.runs.get());
+    }
+
+    @Test
+    public void should_run_job_when_claimed_again() throws Exception {
+        Prefetches.start("claimed twice", value("prefetched"), mExecutor);
+        mExecutor.runAll();
+
+        assertEquals("prefetched", claim("claimed twice"));
+        assertEquals("loaded", claim("claimed twice"));
+        assertEquals(1, mJob.runs.get());
+    }
+
+    @Test
+    public void should_wait_for_prefetch_when_claimed_while_running() throws Exception {
+        Prefetches.start("running", value("prefetched"), mExecutor);
+        final Future<Object> claimed = mLoaders.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return claim("running");
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(claimed.isDone());
+
+        mExecutor.runAll();
+        assertEquals("prefetched", claimed.get(5, TimeUnit.SECONDS));
+        assertEquals(0, mJob.runs.get());
+    }
+
+    @Test
+    public void should_run_job_when_prefetch_failed() throws Exception {
+        Prefetches.start("failed", new Supplier<Object>() {
+            @Override
+            public Object get() throws Exception {
+                throw new IOException("offline");
+            }
+        }, mExecutor);
+        mExecutor.runAll();
+
+        assertEquals("loaded", claim("failed"));
+        assertEquals(1, mJob.runs.get());
+    }
+
+    @Test
+    public void should_replace_prefetch_when_started_again() throws Exception {
+        Prefetches.start("replaced", value("older"), mExecutor);
+        Prefetches.start("replaced", value("newer"), mExecutor);
+        mExecutor.runAll();
+
+        assertEquals("newer", claim("replaced"));
+    }
+
+    @Test
+    public void should_drop_completed_prefetch_when_trimmed() throws Exception {
+        Prefetches.start("trimmed", value("prefetched"), mExecutor);
+        mExecutor.runAll();
+
+        Prefetches.trim();
+        assertEquals("loaded", claim("trimmed"));
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private Object claim(final String key) throws Exception {
+        return Prefetches.claiming(key, mJob).run(new TestContext<>(null));
+    }
+
+    private static Supplier<Object> value(final Object value) {
+        return new Supplier<Object>() {
+            @Override
+            public Object get() {
+                return value;
+            }
+        };
+    }
+
+    private static class CountingJob extends Job<Object> {
+        final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        Object run(final LoadContext<Object> context) {
+            runs.incrementAndGet();
+            return "loaded";
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Target of a {@link LoaderEngine} that records what it is told.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class RecordingTarget<T> implements LoaderEngine.Target<T> {
+
+    final List<Result<T>> delivered = new ArrayList<>();
+
+    boolean active = true;
+
+    int contentChanged;
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public void deliverResult(final Result<T> result) {
+        delivered.add(result);
+    }
+
+    @Override
+    public void onContentChanged() {
+        contentChanged++;
+    }
+
+    /**
+     * @return the last delivered result
+     */
+    Result<T> last() {
+        return delivered.get(delivered.size() - 1);
+    }
+}
@@ -0,0 +1,167 @@
+package org.algi.sugarloader;
+
+import org.algi.sugarloader.function.Predicate;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RetryPolicyTest {
+
+    private final TestContext<Object> mContext = new TestContext<>(null);
+
+    @Test
+    public void should_grow_delays_exponentially_up_to_max_delay() throws Exception {
+        final RetryPolicy policy = RetryPolicy.exponential(10, 100, TimeUnit.MILLISECONDS)
+                .maxDelay(1, TimeUnit.SECONDS)
+                .jitter(0);
+
+        assertEquals(100, policy.delayMillis(2));
+        assertEquals(200, policy.delayMillis(3));
+        assertEquals(400, policy.delayMillis(4));
+        assertEquals(800, policy.delayMillis(5));
+        assertEquals(1000, policy.delayMillis(6));
+    }
+
+    @Test
+    public void should_randomize_delays_within_jitter() throws Exception {
+        final RetryPolicy policy = RetryPolicy.exponential(3, 1000, TimeUnit.MILLISECONDS)
+                .multiplier(3)
+                .jitter(0.2);
+
+        for (int i = 0; i < 100; i++) {
+            final long delay = policy.delayMillis(3);
+            assertTrue(String.valueOf(delay), delay >= 2400 && delay <= 3600);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_when_no_attempt_is_allowed() throws Exception {
+        RetryPolicy.exponential(0, 1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void should_retry_until_success_when_error_is_retryable() throws Exception {
+        final FailingJob job = new FailingJob(2, new IOException("offline"));
+
+        assertEquals("done", policy(3).retrying(job).run(mContext));
+        assertEquals(3, job.attempts);
+    }
+
+    @Test
+    public void should_throw_last_error_when_attempts_are_exhausted() throws Exception {
+        final IOException error = new IOException("offline");
+        final FailingJob job = new FailingJob(5, error);
+
+        try {
+            policy(3).retrying(job).run(mContext);
+            fail("Error was not thrown");
+        } catch (IOException e) {
+            assertSame(error, e);
+        }
+        assertEquals(3, job.attempts);
+    }
+
+    @Test
+    public void should_not_retry_when_error_is_not_retryable() throws Exception {
+        final FailingJob job = new FailingJob(1, new IllegalStateException("bug"));
+
+        try {
+            policy(3).retrying(job).run(mContext);
+            fail("Error was not thrown");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(1, job.attempts);
+    }
+
+    @Test
+    public void should_retry_errors_accepted_by_predicate() throws Exception {
+        final FailingJob job = new FailingJob(1, new IllegalStateException("flaky"));
+        final RetryPolicy policy = policy(2).retryOn(new Predicate<Throwable>() {
+            @Override
+            public boolean test(final Throwable t) {
+                return t instanceof IllegalStateException;
+            }
+        });
+
+        assertEquals("done", policy.retrying(job).run(mContext));
+        assertEquals(2, job.attempts);
+    }
+
+    @Test
+    public void should_not_retry_when_cancelled() throws Exception {
+        final FailingJob job = new FailingJob(5, new IOException("offline"));
+        mContext.cancelled = true;
+
+        try {
+            policy(3).retrying(job).run(mContext);
+            fail("Error was not thrown");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertEquals(1, job.attempts);
+    }
+
+    @Test
+    public void should_revalidate_each_attempt_afresh_when_retried() throws Exception {
+        mContext.revalidation = new Revalidation<>(Result.<Object>success("previous"), "v1");
+        final Job<Object> job = new Job<Object>() {
+            private int mAttempts;
+
+            @Override
+            Object run(final LoadContext<Object> context) throws Exception {
+                final Revalidation<Object> revalidation = context.revalidation();
+                if (++mAttempts == 1) {
+                    // e.g. a 304 whose body then failed to be read
+                    revalidation.setValidator("v2");
+                    revalidation.notModified();
+                    throw new IOException("offline");
+                }
+                return "new";
+            }
+        };
+
+        assertEquals("new", policy(2).retrying(job).run(mContext));
+        assertFalse(mContext.revalidation.isNotModified());
+        assertNull(mContext.revalidation.newValidator());
+        assertEquals("new", mContext.revalidation.resultOf("new").result);
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private static RetryPolicy policy(final int maxAttempts) {
+        return RetryPolicy.exponential(maxAttempts, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fails a given number of times, then returns "done".
+     */
+    private static class FailingJob extends Job<Object> {
+        private final int mFailures;
+        private final Exception mError;
+        int attempts;
+
+        FailingJob(final int failures, final Exception error) {
+            mFailures = failures;
+            mError = error;
+        }
+
+        @Override
+        Object run(final LoadContext<Object> context) throws Exception {
+            if (++attempts <= mFailures) {
+                throw mError;
+            }
+            return "done";
+        }
+    }
+}
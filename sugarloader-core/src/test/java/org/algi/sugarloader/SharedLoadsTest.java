@@ -0,0 +1,169 @@
+package org.algi.sugarloader;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SharedLoadsTest {
+
+    /** How long a second caller is given to join the running load */
+    private static final long JOIN_MILLIS = 100;
+
+    private final ExecutorService mCallers = Executors.newCachedThreadPool();
+
+    @After
+    public void after() {
+        mCallers.shutdownNow();
+    }
+
+    @Test
+    public void should_run_job_once_when_same_key_is_loaded_concurrently() throws Exception {
+        final BlockingJob job = new BlockingJob(null);
+        final Future<Object> first = load("same key", job, new TestContext<>(null));
+        job.awaitStarted();
+        final Future<Object> second = load("same key", job, new TestContext<>(null));
+        Thread.sleep(JOIN_MILLIS);
+
+        job.release();
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, job.runs.get());
+    }
+
+    @Test
+    public void should_share_error_when_job_fails() throws Exception {
+        final IOException error = new IOException("offline");
+        final BlockingJob job = new BlockingJob(error);
+        final Future<Object> first = load("failing key", job, new TestContext<>(null));
+        job.awaitStarted();
+        final Future<Object> second = load("failing key", job, new TestContext<>(null));
+        Thread.sleep(JOIN_MILLIS);
+
+        job.release();
+        assertSame(error, failure(first));
+        assertSame(error, failure(second));
+        assertEquals(1, job.runs.get());
+    }
+
+    @Test
+    public void should_run_job_for_each_key_when_keys_differ() throws Exception {
+        final BlockingJob job = new BlockingJob(null);
+        final Future<Object> first = load("key 1", job, new TestContext<>(null));
+        final Future<Object> second = load("key 2", job, new TestContext<>(null));
+
+        job.release();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, job.runs.get());
+    }
+
+    @Test
+    public void should_run_job_again_when_previous_load_is_over() throws Exception {
+        final BlockingJob job = new BlockingJob(null);
+        job.release();
+
+        load("sequential key", job, new TestContext<>(null)).get(5, TimeUnit.SECONDS);
+        load("sequential key", job, new TestContext<>(null)).get(5, TimeUnit.SECONDS);
+        assertEquals(2, job.runs.get());
+    }
+
+    @Test
+    public void should_stop_waiting_when_waiting_task_is_cancelled() throws Exception {
+        final BlockingJob job = new BlockingJob(null);
+        final Future<Object> first = load("cancelled waiter key", job, new TestContext<>(null));
+        job.awaitStarted();
+        final TestContext<Object> waiting = new TestContext<>(null);
+        final Future<Object> second = load("cancelled waiter key", job, waiting);
+        Thread.sleep(JOIN_MILLIS);
+
+        waiting.cancelled = true;
+        assertTrue(failure(second) instanceof CancellationException);
+        job.release();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void should_run_job_again_when_running_task_is_cancelled() throws Exception {
+        final BlockingJob job = new BlockingJob(null);
+        final TestContext<Object> running = new TestContext<>(null);
+        load("cancelled runner key", job, running);
+        job.awaitStarted();
+        final Future<Object> second = load("cancelled runner key", job, new TestContext<>(null));
+        Thread.sleep(JOIN_MILLIS);
+
+        running.cancelled = true;
+        job.release();
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(2, job.runs.get());
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private Future<Object> load(final String key, final Job<Object> job, final LoadContext<Object> context) {
+        return mCallers.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                return SharedLoads.run(key, job, context);
+            }
+        });
+    }
+
+    private static Throwable failure(final Future<Object> future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("Load did not fail");
+        return null;
+    }
+
+    /**
+     * Counts its runs, and returns a new value (or throws) once released.
+     */
+    private static class BlockingJob extends Job<Object> {
+        final AtomicInteger runs = new AtomicInteger();
+        private final Exception mError;
+        private final CountDownLatch mStarted = new CountDownLatch(1);
+        private final CountDownLatch mReleased = new CountDownLatch(1);
+
+        BlockingJob(final Exception error) {
+            mError = error;
+        }
+
+        @Override
+        Object run(final LoadContext<Object> context) throws Exception {
+            runs.incrementAndGet();
+            mStarted.countDown();
+            mReleased.await(5, TimeUnit.SECONDS);
+            if (mError != null) {
+                throw mError;
+            }
+            return new Object();
+        }
+
+        void awaitStarted() throws InterruptedException {
+            assertTrue(mStarted.await(5, TimeUnit.SECONDS));
+        }
+
+        void release() {
+            mReleased.countDown();
+        }
+    }
+}
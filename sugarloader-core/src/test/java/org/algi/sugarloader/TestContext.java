@@ -0,0 +1,58 @@
+package org.algi.sugarloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+/**
+ * Context to run a job directly from a test, without any loader.
+ *
+ * @author Alexandre Gianquinto
+ */
+final class TestContext<T> implements LoadContext<T> {
+
+    final List<T> emitted = new ArrayList<>();
+
+    volatile boolean cancelled;
+
+    Revalidation<T> revalidation;
+
+    private final Executor mExecutor;
+
+    TestContext(final Executor executor) {
+        mExecutor = executor;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Load was cancelled");
+        }
+    }
+
+    @Override
+    public void emit(final T partial) {
+        emitted.add(partial);
+    }
+
+    @Override
+    public Executor executor() {
+        return mExecutor;
+    }
+
+    @Override
+    public int priority() {
+        return 0;
+    }
+
+    @Override
+    public Revalidation<T> revalidation() {
+        return revalidation;
+    }
+}
@@ -0,0 +1,105 @@
+package org.algi.sugarloader;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimeoutsTest {
+
+    private final TestContext<Object> mContext = new TestContext<>(null);
+
+    @Test
+    public void should_return_value_when_job_completes_in_time() throws Exception {
+        assertEquals("done", Timeouts.limit(sleeping(0), 1000).run(mContext));
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void should_throw_job_error_when_job_fails_in_time() throws Exception {
+        final IOException error = new IOException("offline");
+        final Job<Object> job = new Job<Object>() {
+            @Override
+            Object run(final LoadContext<Object> context) throws Exception {
+                throw error;
+            }
+        };
+
+        try {
+            Timeouts.limit(job, 1000).run(mContext);
+            fail("Error was not thrown");
+        } catch (IOException e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test
+    public void should_interrupt_job_when_time_is_up() throws Exception {
+        final long start = System.nanoTime();
+        try {
+            Timeouts.limit(sleeping(10000), 50).run(mContext);
+            fail("Timeout was not thrown");
+        } catch (TimeoutException e) {
+            // Expected
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        // The interrupt caused by the deadline does not leak to the next job of the thread
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void should_throw_timeout_when_job_ignores_interrupt() throws Exception {
+        final Job<Object> job = new Job<Object>() {
+            @Override
+            Object run(final LoadContext<Object> context) throws Exception {
+                while (!context.isCancelled()) {
+                    // Busy, not interruptible
+                }
+                return "too late";
+            }
+        };
+
+        try {
+            Timeouts.limit(job, 50).run(mContext);
+            fail("Timeout was not thrown");
+        } catch (TimeoutException e) {
+            // Expected
+        }
+        assertFalse(Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void should_run_scheduled_runnable_when_delay_elapsed() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        Timeouts.schedule(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        }, 10);
+
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+    }
+
+    /* ******************************************
+     * Helpers
+     * ******************************************/
+
+    private static Job<Object> sleeping(final long millis) {
+        return new Job<Object>() {
+            @Override
+            Object run(final LoadContext<Object> context) throws Exception {
+                Thread.sleep(millis);
+                return "done";
+            }
+        };
+    }
+}
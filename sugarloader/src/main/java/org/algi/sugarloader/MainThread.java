@@ -0,0 +1,121 @@
+package org.algi.sugarloader;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.RequiresApi;
+import android.view.Choreographer;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link LoaderHost} of Android loaders : posts work to the main thread.
+ * <p>
+ * Work posted on frame is queued, and run by the {@link Choreographer} at the beginning of the
+ * next frame, before layout. Once {@link #FRAME_BUDGET_NANOS} is spent in a frame, the rest waits
+ * for the next one. Before Jelly Bean, frames are approximated with a delay.
+ * </p>
+ *
+ * @author Alexandre Gianquinto
+ */
+final class MainThread implements LoaderHost {
+
+    /** Time given to work posted on frame, leaving the rest of the frame to layout and drawing */
+    private static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
+
+    private static final long FRAME_MILLIS = 16;
+
+    private static final MainThread INSTANCE = new MainThread();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private final ArrayDeque<Runnable> mFrameQueue = new ArrayDeque<>();
+
+    private boolean mFrameScheduled;
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private FrameFlush mFrameFlush;
+
+    private MainThread() {
+    }
+
+    static MainThread get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void post(final Runnable runnable) {
+        mHandler.post(runnable);
+    }
+
+    @Override
+    public void postOnFrame(final Runnable runnable) {
+        mFrameQueue.add(runnable);
+        if (!mFrameScheduled) {
+            mFrameScheduled = true;
+            scheduleFrame();
+        }
+    }
+
+    @Override
+    public void postDelayed(final Runnable runnable, final long delayMillis) {
+        mHandler.postDelayed(runnable, delayMillis);
+    }
+
+    @Override
+    public void cancel(final Runnable runnable) {
+        mHandler.removeCallbacks(runnable);
+    }
+
+    private void scheduleFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            if (mFrameFlush == null) {
+                mFrameFlush = new FrameFlush(mFlush);
+            }
+            mFrameFlush.post();
+        } else {
+            mHandler.postDelayed(mFlush, FRAME_MILLIS);
+        }
+    }
+
+    private void flush() {
+        mFrameScheduled = false;
+        final long start = System.nanoTime();
+        try {
+            do {
+                mFrameQueue.poll().run();
+            } while (!mFrameQueue.isEmpty() && System.nanoTime() - start < FRAME_BUDGET_NANOS);
+        } finally {
+            // Spill to the next frame, even if a handler threw
+            if (!mFrameQueue.isEmpty() && !mFrameScheduled) {
+                mFrameScheduled = true;
+                scheduleFrame();
+            }
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameFlush implements Choreographer.FrameCallback {
+        private final Runnable mFlush;
+
+        FrameFlush(final Runnable flush) {
+            mFlush = flush;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(final long frameTimeNanos) {
+            mFlush.run();
+        }
+    }
+}
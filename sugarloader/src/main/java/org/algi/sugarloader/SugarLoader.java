@@ -8,14 +8,16 @@ import android.content.Loader;
 import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.RequiresApi;
-import android.support.annotation.UiThread;
 import android.support.v7.app.AppCompatActivity;
 
-import org.algi.sugarloader.function.Call;
-import org.algi.sugarloader.function.Consumer;
+import org.algi.sugarloader.function.Function;
 import org.algi.sugarloader.function.Supplier;
 
+import java.io.File;
+import java.util.List;
+
 /**
  * <p>LambdaLoader is a builder that provides a syntaxic sugar to play with google's loader API.</p>
  * For example, the following code :
@@ -74,15 +76,27 @@ import org.algi.sugarloader.function.Supplier;
  * help Android manage their lifecycle separately. If you have only one loader on a single page,
  * then a default ID will be used.
  * </p>
+ * <p>
+ * Builder methods are inherited from {@link LoaderDefinition}, so the same definition may also be
+ * run without Android, by a {@link HostedLoader}.
+ * </p>
  *
  * @author Alexandre Gianquinto
  */
 
-public class SugarLoader<T> {
+public class SugarLoader<T> extends LoaderDefinition<T, SugarLoader<T>> {
 
     private static final int DEFAULT_ID = 795462135;
 
-    private final int id;
+    /** Prefix of the keys of the saved results, followed by the loader name */
+    private static final String STATE_KEY = "org.algi.sugarloader.state.";
+
+    /** Sub-directory of the cache directory, where results too big for the saved state go */
+    private static final String STATE_DIRECTORY = "sugarloader-state";
+
+    private SupportCallbacks mSupportCallbacks;
+
+    private Callbacks mCallbacks;
 
     /**
      * @deprecated use named loader {@link SugarLoader(String)} or identified loader
@@ -92,7 +106,7 @@ public class SugarLoader<T> {
      */
     @Deprecated
     public SugarLoader() {
-        id = DEFAULT_ID;
+        super(DEFAULT_ID, String.valueOf(DEFAULT_ID));
     }
 
     /**
@@ -104,7 +118,7 @@ public class SugarLoader<T> {
      *             each loader lifecycle is bound to its fragment/activity's lifecycle.
      */
     public SugarLoader(final String name) {
-        this.id = name.hashCode();
+        super(name.hashCode(), name);
     }
 
     /**
@@ -114,81 +128,108 @@ public class SugarLoader<T> {
      *           so Android may retrieve it upon configuration changes.
      */
     public SugarLoader(final int id) {
-        this.id = id;
+        super(id, String.valueOf(id));
     }
 
-    @NonNull
-    private Supplier<T> mBackgroundSupplier = Nothing.doNothing();
-
-    @NonNull
-    private Consumer<T> mSuccessConsumer = Nothing.doNothing();
-
-    @NonNull
-    private Consumer<Throwable> mErrorConsumer = new Consumer<Throwable>() {
-        @Override
-        public void accept(final Throwable t) {
-            throw new UnhandledException(t);
-        }
-    };
-
-    @NonNull
-    private Call mBefore = Nothing.doNothing();
-
-    @NonNull
-    private Call mBeforeDeliver = Nothing.doNothing();
-
-    @NonNull
-    private Call mBeforeCreate = Nothing.doNothing();
+    private SugarLoader(final int id, final String name) {
+        super(id, name);
+    }
 
     /**
-     * Provide an operation to be executed on background thread.
+     * Transform the value of the background operation on background thread, right after it : the
+     * UI thread only receives the transformed value, which is also the one kept across configuration
+     * changes, so it is not computed again. Stages are fused : the operation and all its stages run
+     * as one background task. e.g. {@code .background(mService::fetchPets).map(pets -> sortByName(pets))}
+     * <p>
+     * This returns a new loader, of the new type of result, with the same configuration, error
+     * handler included. Only what is bound to the type of result must be set after the stage :
+     * {@code onSuccess}, {@code onSuccessOrStale}, {@code onPartial}, {@code diskCache},
+     * {@code persistAcrossProcessDeath}, and the weighers of {@code cache} and {@code retention}.
+     * </p>
      *
-     * @param backgroundSupplier the operation to be executed. e.g. {@code () -> mService.fetchData(p1, p2)}
-     * @return the builder itself, to pipe with other builder commands
+     * @param function the transformation, run on background thread
+     * @return the loader of the transformed values, to pipe with other builder commands
      */
-    public SugarLoader<T> background(@NonNull Supplier<T> backgroundSupplier) {
-        mBackgroundSupplier = backgroundSupplier;
-        return this;
+    public <R> SugarLoader<R> map(@NonNull Function<? super T, ? extends R> function) {
+        return transformed(new SugarLoader<R>(id, name), Job.map(background(), function));
     }
 
-    @UiThread
-    public SugarLoader<T> onSuccess(@NonNull Consumer<T> uiThreadConsumer) {
-        mSuccessConsumer = uiThreadConsumer;
-        return this;
+    /**
+     * Same as {@link #map(Function)}, for a transformation that is another background operation
+     * depending on the value of the first one. e.g.
+     * {@code .background(mService::fetchUser).flatMap(user -> () -> mService.fetchOrders(user.id))}
+     */
+    public <R> SugarLoader<R> flatMap(@NonNull Function<? super T, ? extends Supplier<? extends R>> function) {
+        return transformed(new SugarLoader<R>(id, name), Job.flatMap(background(), function));
     }
 
-    @UiThread
-    public SugarLoader<T> onError(@NonNull Consumer<Throwable> errorConsumer) {
-        mErrorConsumer = errorConsumer;
-        return this;
+    /**
+     * For a loader of lists : deliver, along with each list, what changed since the list delivered
+     * before, so the UI only updates what changed (e.g. with {@code notifyItemRangeInserted}). Lists
+     * are compared on background thread, with the given callback, right after the background
+     * operation. e.g.
+     * {@code .background(mService::fetchPets).diff(new PetCallback()).onSuccess(diff -> mAdapter.update(diff))}
+     * <p>
+     * As for {@link #map(Function)}, this returns a new loader with the same configuration, and
+     * options bound to the type of result must be set after it.
+     * </p>
+     *
+     * @param callback tells whether items are the same, and whether their content changed
+     * @return the loader of the lists and their changes, to pipe with other builder commands
+     * @see ListDiff
+     */
+    @SuppressWarnings("unchecked")
+    public <E> SugarLoader<ListDiff<E>> diff(@NonNull ChangeSet.ItemCallback<? super E> callback) {
+        return transformed(new SugarLoader<ListDiff<E>>(id, name), Job.diff((Job<List<E>>) (Job<?>) background(), callback));
     }
 
-
     /**
-     * This handler will be called before loader is started.
+     * Restore the result saved by {@link #saveState(Bundle)} before the process was killed, if the
+     * loader does not exist anymore : {@code init} then delivers it without loading it again. Call
+     * it before {@code init}, e.g. {@code .restoreState(savedInstanceState).init(this)}.
+     *
+     * @param savedInstanceState the state given to {@code onCreate}, may be null
+     * @return the builder itself, to pipe with other builder commands
+     * @see #persistAcrossProcessDeath(ResultSerializer, int)
      */
-    public SugarLoader<T> beforeStart(@NonNull Call before) {
-        mBefore = before;
+    public SugarLoader<T> restoreState(@Nullable Bundle savedInstanceState) {
+        if (savedInstanceState != null) {
+            final String path = savedInstanceState.getString(STATE_KEY + name + ".file");
+            restoreState(savedInstanceState.getByteArray(STATE_KEY + name), path != null ? new File(path) : null);
+        }
         return this;
     }
 
     /**
-     * This handler will be called when loader object is effectively created. This won't happen when
-     * fragment simply bounds to existing running loader.
+     * Save the last result of the loader with the state of its activity or fragment, if it was
+     * configured with {@link #persistAcrossProcessDeath(ResultSerializer, int)}. The result was
+     * serialized in background as soon as it was loaded, and written to a side file if it is too
+     * big : this only copies it, or the path of its side file. Nothing is saved if the side file is
+     * not written yet.
+     *
+     * @param outState the state given to {@code onSaveInstanceState}
      */
-    public SugarLoader<T> beforeCreateLoader(@NonNull Call beforeCreate) {
-        mBeforeCreate = beforeCreate;
-        return this;
+    public void saveState(@NonNull Bundle outState) {
+        final PersistedState<T> persisted = persistedState();
+        if (persisted == null) {
+            return;
+        }
+        final byte[] bytes = persisted.bytes();
+        if (bytes != null) {
+            outState.putByteArray(STATE_KEY + name, bytes);
+            return;
+        }
+        final File file = persisted.savedFile();
+        if (file != null) {
+            outState.putString(STATE_KEY + name + ".file", file.getPath());
+        }
     }
 
     /**
-     * This handler will be called before result is delivered, on UI Thread.
-     * This may be useful to do actions that are independant of the result (hiding a ProgressBar,
-     * showing a text, ...)
+     * @return the directory of the side files, in the cache directory of the application
      */
-    public SugarLoader<T> beforeDeliver(@NonNull Call before) {
-        mBeforeDeliver = before;
-        return this;
+    private static File stateDirectory(final Context context) {
+        return new File(context.getCacheDir(), STATE_DIRECTORY);
     }
 
     /* ******************************************
@@ -196,32 +237,57 @@ public class SugarLoader<T> {
      * ******************************************/
 
     public void init(final AppCompatActivity activity) {
-        mBefore.apply();
-        activity.getSupportLoaderManager().initLoader(id, null, getSupportLoaderCallbacks(activity));
+        final android.support.v4.app.LoaderManager loaderManager = activity.getSupportLoaderManager();
+        if (beforeInit(loaderManager.getLoader(id))) {
+            return;
+        }
+        loaderManager.initLoader(id, null, getSupportLoaderCallbacks(activity));
     }
 
     public void init(final android.support.v4.app.Fragment fragment) {
-        mBefore.apply();
-        fragment.getLoaderManager().initLoader(id, null, getSupportLoaderCallbacks(fragment.getContext()));
+        final android.support.v4.app.LoaderManager loaderManager = fragment.getLoaderManager();
+        final Object loader = loaderManager.getLoader(id);
+        hostVisible(loader, fragment.getUserVisibleHint());
+        if (beforeInit(loader)) {
+            return;
+        }
+        loaderManager.initLoader(id, null, getSupportLoaderCallbacks(fragment.getContext()));
     }
 
     public void restart(final AppCompatActivity activity) {
-        mBefore.apply();
-        activity.getSupportLoaderManager().restartLoader(id, null, getSupportLoaderCallbacks(activity.getBaseContext()));
+        scheduleRestart(new Runnable() {
+            @Override
+            public void run() {
+                if (!activity.isFinishing()) {
+                    beforeRestart(activity.getSupportLoaderManager().getLoader(id));
+                    activity.getSupportLoaderManager().restartLoader(id, null, getSupportLoaderCallbacks(activity));
+                }
+            }
+        });
     }
 
     public void restart(final android.support.v4.app.Fragment fragment) {
-        mBefore.apply();
-        fragment.getLoaderManager().restartLoader(id, null, getSupportLoaderCallbacks(fragment.getContext()));
+        scheduleRestart(new Runnable() {
+            @Override
+            public void run() {
+                if (fragment.isAdded()) {
+                    hostVisible(null, fragment.getUserVisibleHint());
+                    beforeRestart(fragment.getLoaderManager().getLoader(id));
+                    fragment.getLoaderManager().restartLoader(id, null, getSupportLoaderCallbacks(fragment.getContext()));
+                }
+            }
+        });
     }
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void destroy(AppCompatActivity activity) {
+        cancelPendingRestart();
         activity.getSupportLoaderManager().destroyLoader(id);
     }
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void destroy(android.support.v4.app.Fragment fragment) {
+        cancelPendingRestart();
         fragment.getLoaderManager().destroyLoader(id);
     }
 
@@ -232,100 +298,157 @@ public class SugarLoader<T> {
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void init(final Activity activity) {
-        mBefore.apply();
-        activity.getLoaderManager().initLoader(id, null, getLoaderCallbacks(activity));
+        final LoaderManager loaderManager = activity.getLoaderManager();
+        if (beforeInit(loaderManager.getLoader(id))) {
+            return;
+        }
+        loaderManager.initLoader(id, null, getLoaderCallbacks(activity));
     }
 
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void init(final Fragment fragment) {
-        mBefore.apply();
-        fragment.getLoaderManager().initLoader(id, null, getLoaderCallbacks(fragment.getActivity()));
+        final LoaderManager loaderManager = fragment.getLoaderManager();
+        final Object loader = loaderManager.getLoader(id);
+        hostVisible(loader, isUserVisible(fragment));
+        if (beforeInit(loader)) {
+            return;
+        }
+        loaderManager.initLoader(id, null, getLoaderCallbacks(fragment.getActivity()));
     }
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void restart(final Activity activity) {
-        mBefore.apply();
-        activity.getLoaderManager().restartLoader(id, null, getLoaderCallbacks(activity));
+        scheduleRestart(new Runnable() {
+            @Override
+            public void run() {
+                if (!activity.isFinishing()) {
+                    beforeRestart(activity.getLoaderManager().getLoader(id));
+                    activity.getLoaderManager().restartLoader(id, null, getLoaderCallbacks(activity));
+                }
+            }
+        });
     }
 
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void restart(final Fragment fragment) {
-        mBefore.apply();
-        fragment.getLoaderManager().restartLoader(id, null, getLoaderCallbacks(fragment.getActivity()));
+        scheduleRestart(new Runnable() {
+            @Override
+            public void run() {
+                if (fragment.isAdded()) {
+                    hostVisible(null, isUserVisible(fragment));
+                    beforeRestart(fragment.getLoaderManager().getLoader(id));
+                    fragment.getLoaderManager().restartLoader(id, null, getLoaderCallbacks(fragment.getActivity()));
+                }
+            }
+        });
     }
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void destroy(Activity activity) {
+        cancelPendingRestart();
         activity.getLoaderManager().destroyLoader(id);
     }
 
     @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
     public void destroy(Fragment fragment) {
+        cancelPendingRestart();
         fragment.getLoaderManager().destroyLoader(id);
     }
 
+    /**
+     * @return whether the fragment is visible to the user : framework fragments only tell from
+     * API 15, they are deemed visible before
+     */
+    @RequiresApi(api = Build.VERSION_CODES.HONEYCOMB)
+    private static boolean isUserVisible(final Fragment fragment) {
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1 || fragment.getUserVisibleHint();
+    }
+
+    @Override
+    SugarLoader<T> self() {
+        return this;
+    }
+
+    @Override
+    LoaderHost host() {
+        return MainThread.get();
+    }
+
     /* ******************************************
      * Loader callbacks (duplicated for supoprt)
      * ******************************************/
 
+    /**
+     * @return the callbacks creating loaders with the given context, kept as long as the context
+     * stays the same : re-init (e.g. from onResume) does not allocate
+     */
     @NonNull
     private android.support.v4.app.LoaderManager.LoaderCallbacks<Result<T>> getSupportLoaderCallbacks(final Context baseContext) {
-        return new android.support.v4.app.LoaderManager.LoaderCallbacks<Result<T>>() {
-            @Override
-            public android.support.v4.content.Loader<Result<T>> onCreateLoader(final int i, final Bundle bundle) {
-                mBeforeCreate.apply();
-                return new SupportLambdaAsyncTaskLoader<>(baseContext, mBackgroundSupplier);
-            }
-
-            @Override
-            public void onLoadFinished(final android.support.v4.content.Loader<Result<T>> loader, final Result<T> tResult) {
-                mBeforeDeliver.apply();
-                try {
-                    if (tResult.isSuccess) {
-                        mSuccessConsumer.accept(tResult.result);
-                    } else {
-                        mErrorConsumer.accept(tResult.error);
-                    }
-                } catch (ClassCastException e) {
-                    throw new IllegalStateException("Unexpected result delivered to this loader : did you forget to name it properly or does it have the same name as another loader inside the same instance ?", e);
-                }
-            }
-
-            @Override
-            public void onLoaderReset(final android.support.v4.content.Loader<Result<T>> loader) {
-            }
-        };
+        if (mSupportCallbacks == null || mSupportCallbacks.mContext != baseContext) {
+            mSupportCallbacks = new SupportCallbacks(baseContext);
+        }
+        return mSupportCallbacks;
     }
 
+    /**
+     * @see #getSupportLoaderCallbacks(Context)
+     */
     @NonNull
     private LoaderManager.LoaderCallbacks<Result<T>> getLoaderCallbacks(final Context baseContext) {
-        return new LoaderManager.LoaderCallbacks<Result<T>>() {
-            @Override
-            public Loader<Result<T>> onCreateLoader(final int i, final Bundle bundle) {
-                mBeforeCreate.apply();
-                return new LambdaAsyncTaskLoader<>(baseContext, mBackgroundSupplier);
-            }
+        if (mCallbacks == null || mCallbacks.mContext != baseContext) {
+            mCallbacks = new Callbacks(baseContext);
+        }
+        return mCallbacks;
+    }
 
-            @Override
-            public void onLoadFinished(final Loader<Result<T>> loader, final Result<T> tResult) {
-                mBeforeDeliver.apply();
-                try {
-                    if (tResult.isSuccess) {
-                        mSuccessConsumer.accept(tResult.result);
-                    } else {
-                        mErrorConsumer.accept(tResult.error);
-                    }
-                } catch (ClassCastException e) {
-                    throw new IllegalStateException("Unexpected result delivered to this loader : did you forget to name it properly or does it have the same name as another loader inside the same instance ?", e);
-                }
-            }
+    private class SupportCallbacks implements android.support.v4.app.LoaderManager.LoaderCallbacks<Result<T>> {
+        private final Context mContext;
 
-            @Override
-            public void onLoaderReset(final Loader<Result<T>> loader) {
-            }
-        };
+        SupportCallbacks(final Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public android.support.v4.content.Loader<Result<T>> onCreateLoader(final int i, final Bundle bundle) {
+            final SupportLambdaAsyncTaskLoader<T> loader = new SupportLambdaAsyncTaskLoader<>(mContext, createSpec(stateDirectory(mContext)));
+            loaderCreated(loader);
+            return loader;
+        }
+
+        @Override
+        public void onLoadFinished(final android.support.v4.content.Loader<Result<T>> loader, final Result<T> tResult) {
+            dispatch(loader, tResult);
+        }
+
+        @Override
+        public void onLoaderReset(final android.support.v4.content.Loader<Result<T>> loader) {
+        }
+    }
+
+    private class Callbacks implements LoaderManager.LoaderCallbacks<Result<T>> {
+        private final Context mContext;
+
+        Callbacks(final Context context) {
+            mContext = context;
+        }
+
+        @Override
+        public Loader<Result<T>> onCreateLoader(final int i, final Bundle bundle) {
+            final LambdaAsyncTaskLoader<T> loader = new LambdaAsyncTaskLoader<>(mContext, createSpec(stateDirectory(mContext)));
+            loaderCreated(loader);
+            return loader;
+        }
+
+        @Override
+        public void onLoadFinished(final Loader<Result<T>> loader, final Result<T> tResult) {
+            dispatch(loader, tResult);
+        }
+
+        @Override
+        public void onLoaderReset(final Loader<Result<T>> loader) {
+        }
     }
 
 }
@@ -1,49 +1,90 @@
 package org.algi.sugarloader;
 
 import android.content.Context;
-import android.support.v4.content.AsyncTaskLoader;
-
-import org.algi.sugarloader.function.Supplier;
+import android.os.Build;
+import android.support.v4.content.Loader;
 
 /**
  * Support loader that will take a supplier and store result on config change, so request will be played only
  * once.
+ * <p>
+ * The supplier is run on the executor of its {@link LoadSpec} rather than on AsyncTask's shared
+ * pool, so each {@link SugarLoader} may choose where its work is scheduled. What it does is shared
+ * with every kind of loader, in {@link LoaderEngine}.
+ * </p>
  *
  * @author Alexandre Gianquinto
  */
-class SupportLambdaAsyncTaskLoader<T> extends AsyncTaskLoader<Result<T>> {
-
-    private final Supplier<T> mBackgroundSupplier;
+class SupportLambdaAsyncTaskLoader<T> extends Loader<Result<T>> implements LoaderEngine.Target<T>, LoaderEngine.Owner<T> {
+    private final LoaderEngine<T> mEngine;
 
-    SupportLambdaAsyncTaskLoader(final Context context, final Supplier<T> backgroundSupplier) {
+    SupportLambdaAsyncTaskLoader(final Context context, final LoadSpec<T> spec) {
         super(context);
-        mBackgroundSupplier = backgroundSupplier;
-    }
-
-    private Result<T> localResult;
-
-    @Override
-    public Result<T> loadInBackground() {
-        try {
-            return new Result<T>(mBackgroundSupplier.get());
-        } catch (Exception e) {
-            return new Result<T>(e);
+        mEngine = new LoaderEngine<>(spec, this);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            TrimMemoryCallbacks.register(context);
         }
     }
 
     @Override
     protected void onStartLoading() {
         super.onStartLoading();
-        if (localResult == null) {
+        mEngine.setStarted(true);
+        final Result<T> retained = mEngine.retained();
+        if (retained != null) {
+            deliverResult(retained);
+        }
+        // Content changed while stopped (see LoaderEngine.Target#onContentChanged) : load it now
+        if (takeContentChanged() || mEngine.needsLoad()) {
             forceLoad();
-        } else {
-            deliverResult(localResult);
         }
     }
 
+    @Override
+    protected void onStopLoading() {
+        super.onStopLoading();
+        // The host is not displayed anymore : let other loads go first
+        mEngine.setStarted(false);
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        mEngine.load();
+    }
+
+    @Override
+    protected boolean onCancelLoad() {
+        mEngine.cancel();
+        return false;
+    }
+
+    @Override
+    protected void onAbandon() {
+        super.onAbandon();
+        // Nobody will receive the result : let the supplier stop early
+        mEngine.cancel();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mEngine.reset();
+    }
+
+    @Override
+    public boolean isActive() {
+        return !isAbandoned() && !isReset();
+    }
+
     @Override
     public void deliverResult(final Result<T> data) {
         super.deliverResult(data);
-        localResult = data;
+        mEngine.retain(data);
+    }
+
+    @Override
+    public LoaderEngine<T> engine() {
+        return mEngine;
     }
 }
@@ -0,0 +1,52 @@
+package org.algi.sugarloader;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+
+/**
+ * Forwards the memory warnings of the application to {@link MemoryPressure}. Registered once, by
+ * the first loader created. {@link ComponentCallbacks2} only exists since Ice Cream Sandwich :
+ * before, memory is never trimmed.
+ *
+ * @author Alexandre Gianquinto
+ */
+@RequiresApi(api = Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+final class TrimMemoryCallbacks implements ComponentCallbacks2 {
+
+    private static boolean sRegistered;
+
+    private TrimMemoryCallbacks() {
+    }
+
+    /**
+     * Called on UI thread.
+     */
+    static void register(final Context context) {
+        if (sRegistered) {
+            return;
+        }
+        context.getApplicationContext().registerComponentCallbacks(new TrimMemoryCallbacks());
+        sRegistered = true;
+    }
+
+    @Override
+    public void onTrimMemory(final int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            MemoryPressure.trim(true);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            MemoryPressure.trim(false);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        MemoryPressure.trim(true);
+    }
+
+    @Override
+    public void onConfigurationChanged(final Configuration configuration) {
+    }
+}
@@ -0,0 +1,118 @@
+package org.algi.sugarloader;
+
+import android.app.Activity;
+import android.app.LoaderManager;
+import android.content.Loader;
+import android.os.Bundle;
+
+import org.algi.sugarloader.function.Supplier;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SugarLoaderTest {
+
+    private static final int INITS = 10000;
+
+    private FakeLoaderManager mLoaderManager;
+    private Activity mActivity;
+    private SugarLoader<String> mSugarLoader;
+
+    @Before
+    public void before() {
+        mLoaderManager = new FakeLoaderManager();
+        mActivity = new Activity() {
+            @Override
+            public LoaderManager getLoaderManager() {
+                return mLoaderManager;
+            }
+        };
+        mSugarLoader = new SugarLoader<String>("test")
+                .background(new Supplier<String>() {
+                    @Override
+                    public String get() {
+                        return "a";
+                    }
+                });
+    }
+
+    @Test
+    public void should_reuse_existing_loader_when_init_again() throws Exception {
+        mSugarLoader.init(mActivity);
+        final Loader<?> loader = mLoaderManager.mLoader;
+        assertNotNull(loader);
+
+        mSugarLoader.init(mActivity);
+        assertEquals(1, mLoaderManager.mCreated);
+        assertSame(loader, mLoaderManager.mLoader);
+    }
+
+    @Test
+    public void should_not_allocate_when_init_again() throws Exception {
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long thread = Thread.currentThread().getId();
+        mSugarLoader.init(mActivity);
+        // Warm up
+        for (int i = 0; i < INITS; i++) {
+            mSugarLoader.init(mActivity);
+        }
+
+        // e.g. from onResume : the loader and its callbacks already exist
+        final long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < INITS; i++) {
+            mSugarLoader.init(mActivity);
+        }
+        final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // Less than a byte per init : only the measure itself may allocate
+        assertTrue(allocated + " bytes allocated by " + INITS + " inits", allocated < INITS);
+        assertEquals(1, mLoaderManager.mCreated);
+    }
+
+    /**
+     * Keeps a single loader, created on first init, as the framework does for a given id.
+     */
+    private static class FakeLoaderManager extends LoaderManager {
+        Loader<?> mLoader;
+        int mCreated;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <D> Loader<D> initLoader(final int id, final Bundle args, final LoaderCallbacks<D> callback) {
+            if (mLoader == null) {
+                mLoader = callback.onCreateLoader(id, args);
+                mCreated++;
+            }
+            return (Loader<D>) mLoader;
+        }
+
+        @Override
+        public <D> Loader<D> restartLoader(final int id, final Bundle args, final LoaderCallbacks<D> callback) {
+            mLoader = null;
+            return initLoader(id, args, callback);
+        }
+
+        @Override
+        public void destroyLoader(final int id) {
+            mLoader = null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <D> Loader<D> getLoader(final int id) {
+            return (Loader<D>) mLoader;
+        }
+
+        @Override
+        public void dump(final String prefix, final FileDescriptor fd, final PrintWriter writer, final String[] args) {
+        }
+    }
+}